@@ -0,0 +1,88 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Case-insensitive title matching and ordering over stored UTF-8 bytes,
+ * shared by the stores that keep titles as bytes.  Pure-ASCII titles are
+ * handled byte by byte; anything else is decoded and compared exactly as
+ * String.toLowerCase() would, so results never differ from the heap store.
+ */
+final class AsciiText {
+    /**
+     * True if toLowerCase() in the default locale maps ASCII letters to
+     * their ASCII lowercase forms (it does not in, e.g., Turkish), which the
+     * byte-level fast paths rely on.
+     */
+    static final boolean ASCII_LOWERCASE =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals("abcdefghijklmnopqrstuvwxyz");
+
+    private AsciiText() {
+    }
+
+    /** True if every char of the string is below 0x80. */
+    static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    static int lower(int b) {
+        return (b >= 'A' && b <= 'Z') ? b + ('a' - 'A') : b;
+    }
+
+    /** True if buf[start, end) lowercased contains the lowercase ASCII needle. */
+    static boolean containsIgnoreCase(ByteBuffer buf, int start, int end, byte[] needle) {
+        int n = needle.length;
+        if (n == 0) return true;
+        int first = needle[0];
+        for (int i = start, last = end - n; i <= last; i++) {
+            if (lower(buf.get(i)) != first) continue;
+            int j = 1;
+            while (j < n && lower(buf.get(i + j)) == needle[j]) j++;
+            if (j == n) return true;
+        }
+        return false;
+    }
+
+    /** True if bytes[start, end) lowercased contains the lowercase ASCII needle. */
+    static boolean containsIgnoreCase(byte[] bytes, int start, int end, byte[] needle) {
+        int n = needle.length;
+        if (n == 0) return true;
+        int first = needle[0];
+        for (int i = start, last = end - n; i <= last; i++) {
+            if (lower(bytes[i]) != first) continue;
+            int j = 1;
+            while (j < n && lower(bytes[i + j]) == needle[j]) j++;
+            if (j == n) return true;
+        }
+        return false;
+    }
+
+    /** Compares two ASCII byte ranges as their lowercased Strings would compare. */
+    static int compareIgnoreCase(ByteBuffer a, int aStart, int aEnd,
+                                 ByteBuffer b, int bStart, int bEnd) {
+        int aLength = aEnd - aStart;
+        int bLength = bEnd - bStart;
+        for (int i = 0, n = Math.min(aLength, bLength); i < n; i++) {
+            int d = lower(a.get(aStart + i)) - lower(b.get(bStart + i));
+            if (d != 0) return d;
+        }
+        return aLength - bLength;
+    }
+
+    /** Compares two ASCII byte ranges as their lowercased Strings would compare. */
+    static int compareIgnoreCase(byte[] a, int aStart, int aEnd, byte[] b, int bStart, int bEnd) {
+        int aLength = aEnd - aStart;
+        int bLength = bEnd - bStart;
+        for (int i = 0, n = Math.min(aLength, bLength); i < n; i++) {
+            int d = lower(a[aStart + i]) - lower(b[bStart + i]);
+            if (d != 0) return d;
+        }
+        return aLength - bLength;
+    }
+
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends error entries to errors.log from a background writer thread, so
+ * the threads reporting errors never touch the file themselves.  Entries go
+ * through a bounded ring buffer and are written in batches through one
+ * long-lived FileChannel, opened when the first entry arrives.  The lines
+ * are the same as LibraryBookTracker always wrote:
+ * "[yyyy-MM-ddTHH:mm:ss] context - ExceptionType: message".
+ *
+ * When the buffer is full, -Dlibrary.errorlog.policy=block (the default)
+ * makes the reporting thread wait for room; "drop" discards the entry and
+ * notes how many were dropped in the log instead.  The buffer holds
+ * -Dlibrary.errorlog.capacity entries (default 8192).  {@link #flush()}
+ * waits until everything logged so far is in the file.
+ */
+public class AsyncErrorLog {
+    private static final DateTimeFormatter TIMESTAMP =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final int CAPACITY = Integer.getInteger("library.errorlog.capacity", 8192);
+    private static final boolean DROP_WHEN_FULL =
+        "drop".equals(System.getProperty("library.errorlog.policy", "block"));
+    private static final int MAX_BATCH = 1024;
+
+    private static final Map<File, AsyncErrorLog> LOGS = new ConcurrentHashMap<>();
+
+    /** One error, formatted on the writer thread. */
+    private static final class Entry {
+        final LocalDateTime time;
+        final String context;
+        final String type;
+        final String message;
+
+        Entry(LocalDateTime time, String context, String type, String message) {
+            this.time = time;
+            this.context = context;
+            this.type = type;
+            this.message = message;
+        }
+    }
+
+    private final File file;
+    private final BlockingQueue<Entry> ring = new ArrayBlockingQueue<>(CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+
+    // Guarded by this; written counts dropped entries too
+    private long enqueued;
+    private long written;
+    private IOException failure;
+
+    // Writer thread only
+    private FileChannel channel;
+    private long droppedReported;
+
+    private AsyncErrorLog(File file) {
+        this.file = file;
+        Thread writer = new Thread(this::writeLoop, "error-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Returns the shared log for the file, starting its writer thread on first use. */
+    public static AsyncErrorLog forFile(File file) {
+        return LOGS.computeIfAbsent(file.getAbsoluteFile(), AsyncErrorLog::new);
+    }
+
+    /** Flushes every log opened so far; rethrows the first write failure, if any. */
+    public static void flushAll() throws IOException {
+        IOException first = null;
+        for (AsyncErrorLog log : LOGS.values()) {
+            try {
+                log.flush();
+            } catch (IOException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    /** Queues an entry for the error, waiting for room or dropping it when the buffer is full. */
+    public void log(String context, Exception e) {
+        Entry entry = new Entry(LocalDateTime.now(), context,
+            e.getClass().getSimpleName(), e.getMessage());
+        // Counted before it is queued, so a flush can never miss a queued entry
+        synchronized (this) {
+            enqueued++;
+        }
+        boolean queued;
+        if (DROP_WHEN_FULL) {
+            queued = ring.offer(entry);
+        } else {
+            try {
+                ring.put(entry);
+                queued = true;
+            } catch (InterruptedException ie) {
+                queued = false;
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued) {
+            dropped.increment();
+            synchronized (this) {
+                written++;   // settled: there is nothing left to wait for
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until every entry queued so far has been written.  Throws the
+     * first write failure since the last flush, if there was one.
+     */
+    public synchronized void flush() throws IOException {
+        long target = enqueued;
+        boolean interrupted = false;
+        while (written < target) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        IOException e = failure;
+        failure = null;
+        if (e != null) throw e;
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder text = new StringBuilder(MAX_BATCH * 128);
+        String newLine = System.lineSeparator();
+        while (true) {
+            try {
+                batch.add(ring.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            ring.drainTo(batch, MAX_BATCH - 1);
+
+            text.setLength(0);
+            for (Entry entry : batch) {
+                text.append('[').append(TIMESTAMP.format(entry.time)).append("] ")
+                    .append(entry.context).append(" - ")
+                    .append(entry.type).append(": ").append(entry.message).append(newLine);
+            }
+            long droppedNow = dropped.sum();
+            if (droppedNow > droppedReported) {
+                text.append('[').append(TIMESTAMP.format(LocalDateTime.now())).append("] ")
+                    .append("ERROR LOG FULL - ").append(droppedNow - droppedReported)
+                    .append(" entries dropped").append(newLine);
+                droppedReported = droppedNow;
+            }
+
+            IOException error = null;
+            try {
+                write(text);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                if (error != null && failure == null) failure = error;
+                written += batch.size();
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(CharSequence text) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        // Same bytes as the FileWriter this replaces
+        ByteBuffer bytes = Charset.defaultCharset().encode(text.toString());
+        while (bytes.hasRemaining()) channel.write(bytes);
+    }
+}
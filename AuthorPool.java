@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+/**
+ * Canonical author strings for one catalog: each distinct author is kept
+ * once and every book by that author shares the same String instance.
+ * Authors also get dense ids (0, 1, 2, ... in order of first appearance)
+ * so stores can keep an int per record instead of a reference.
+ *
+ * A line's author can be looked up straight from the line, so a repeated
+ * author costs no allocation at all.  Not thread-safe: the catalog loader
+ * and the reader feeding it use it from one thread.
+ */
+public class AuthorPool {
+    private static final int INITIAL_CAPACITY = 1024;   // must be a power of two
+
+    private String[] authors = new String[INITIAL_CAPACITY / 2];   // by id
+    private int[] slots = new int[INITIAL_CAPACITY];               // id + 1, 0 = empty
+    private int size;
+
+    private long shared;        // occurrences that reused a pooled instance
+    private long savedBytes;    // estimated heap those occurrences would have retained
+
+    /** Number of distinct authors. */
+    public int size() {
+        return size;
+    }
+
+    /** The author with the given id. */
+    public String get(int id) {
+        return authors[id];
+    }
+
+    /** Returns the id of the author, adding it if it is new. */
+    public int idOf(String author) {
+        int slot = find(author, 0, author.length(), author.hashCode());
+        if (slots[slot] != 0) return slots[slot] - 1;
+        return insert(slot, author);
+    }
+
+    /** Returns the pooled instance equal to the author, adding this one if it is new. */
+    public String intern(String author) {
+        int slot = find(author, 0, author.length(), author.hashCode());
+        if (slots[slot] == 0) {
+            insert(slot, author);
+            return author;
+        }
+        String pooled = authors[slots[slot] - 1];
+        if (pooled != author) recordShared(pooled);
+        return pooled;
+    }
+
+    /**
+     * Returns the pooled instance equal to s[start, end), adding a copy of
+     * that range if it is new; a known author is returned without copying.
+     */
+    public String intern(String s, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + s.charAt(i);   // String.hashCode
+        int slot = find(s, start, end, hash);
+        if (slots[slot] == 0) {
+            String author = s.substring(start, end);
+            insert(slot, author);
+            return author;
+        }
+        String pooled = authors[slots[slot] - 1];
+        recordShared(pooled);
+        return pooled;
+    }
+
+    /** Occurrences that reused a pooled instance instead of keeping their own. */
+    public long getSharedCount() {
+        return shared;
+    }
+
+    /**
+     * Estimated heap those occurrences would otherwise have kept alive: a
+     * String object plus its byte array each, as laid out by a 64-bit JVM
+     * with compressed references and compact strings.
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    private void recordShared(String author) {
+        shared++;
+        savedBytes += footprint(author);
+    }
+
+    static long footprint(String s) {
+        boolean latin1 = true;
+        for (int i = 0; i < s.length() && latin1; i++) latin1 = s.charAt(i) <= 0xFF;
+        long array = 16 + (long) s.length() * (latin1 ? 1 : 2);
+        return 24 + ((array + 7) & ~7L);
+    }
+
+    /** Slot holding the author equal to s[start, end), or the empty slot where it belongs. */
+    private int find(String s, int start, int end, int hash) {
+        int mask = slots.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        int length = end - start;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) return slot;
+            String candidate = authors[entry - 1];
+            if (candidate.length() == length && candidate.regionMatches(0, s, start, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int insert(int slot, String author) {
+        if (size == authors.length) authors = Arrays.copyOf(authors, size * 2);
+        int id = size++;
+        authors[id] = author;
+        slots[slot] = id + 1;
+        if (size > slots.length / 2) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int hash = authors[id].hashCode();
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary catalog format.  Every record was validated when it was
+ * written, so loading one is a matter of decoding it: no charset decoding
+ * of whole lines, no field splitting and no number parsing.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header  magic 0x89 'L' 'B' 'C', version (1 byte), flags (1 byte),
+ *           2 reserved bytes, record count (long), end of the last record (long)
+ *   record  title:  length (varint) + UTF-8 bytes
+ *           author: 0 (varint) + length (varint) + UTF-8 bytes for an author
+ *                   the file has not defined yet, which takes the next id;
+ *                   otherwise id + 1 (varint)
+ *           ISBN (long), copies (varint)
+ * </pre>
+ * Varints are unsigned LEB128.  The header's count and end are updated in
+ * place after an append has written its record, so an interrupted append
+ * leaves the catalog as it was.  Appends always define their author inline
+ * (reading the dictionary back would mean reading the whole file); the next
+ * full rewrite packs the dictionary again.  The flags record whether every
+ * ISBN was checked for a valid check digit; if not, and
+ * -Dlibrary.isbn.checksum=true, the ISBNs are checked as they are loaded.
+ */
+public class BinaryCatalogFormat implements CatalogFormat {
+    private static final byte[] MAGIC = { (byte) 0x89, 'L', 'B', 'C' };
+    private static final byte VERSION = 1;
+    private static final int VERSION_AT = 4;
+    private static final int FLAGS_AT   = 5;
+    private static final int COUNT_AT   = 8;
+    private static final int END_AT     = 16;
+    private static final int HEADER     = 24;
+
+    /** Flag set when every ISBN in the file has a valid ISBN-13 check digit. */
+    private static final byte ISBN_CHECKSUMS = 1;
+
+    private static final long ISBN_LIMIT  = 10_000_000_000_000L;   // 10^13
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** True if the first bytes of a file are this format's magic. */
+    static boolean isMagic(byte[] head) {
+        return Arrays.equals(head, MAGIC);
+    }
+
+    @Override
+    public void read(File file, CatalogSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            in.require(HEADER);
+            ByteBuffer header = in.buf;
+            long count = readHeader(header, channel.size());
+            header.position(HEADER);
+            boolean checkIsbns = LibraryBookTracker.ISBN_CHECKSUM
+                && (header.get(FLAGS_AT) & ISBN_CHECKSUMS) == 0;
+
+            List<String> authors = new ArrayList<>();
+            for (long n = 0; n < count; n++) {
+                String title = in.readString();
+                int ref = in.readVarint();
+                String author;
+                if (ref == 0) {
+                    author = in.readString();
+                    authors.add(author);
+                } else if (ref > 0 && ref <= authors.size()) {
+                    author = authors.get(ref - 1);
+                } else {
+                    throw corrupt("record " + n + " refers to undefined author "
+                        + Integer.toUnsignedLong(ref - 1));
+                }
+                long isbn = in.readLong();
+                int copies = in.readVarint();
+                if (title.isEmpty() || author.isEmpty() || isbn < 0 || isbn >= ISBN_LIMIT || copies <= 0) {
+                    throw corrupt("record " + n + " is not a valid book");
+                }
+
+                Book book = new Book(title, author, isbn, copies);
+                if (checkIsbns) {
+                    try {
+                        LibraryBookTracker.validateISBN(book.getIsbn());
+                    } catch (InvalidISBNException e) {
+                        sink.reject(book.toFileString(), e);
+                        continue;
+                    }
+                }
+                sink.accept(book);
+            }
+        }
+    }
+
+    /** Checks the header and returns the record count. */
+    private static long readHeader(ByteBuffer header, long fileSize) throws IOException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) throw corrupt("bad magic");
+        }
+        if (header.get(VERSION_AT) != VERSION) {
+            throw corrupt("unsupported version " + header.get(VERSION_AT));
+        }
+        long count = header.getLong(COUNT_AT);
+        long end = header.getLong(END_AT);
+        if (count < 0 || end < HEADER || end > fileSize) throw corrupt("bad header");
+        return count;
+    }
+
+    @Override
+    public void write(File file, List<Book> books) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // An empty catalog first; the real count and end go in once the records are down
+            writeFully(channel, header(0, HEADER, LibraryBookTracker.ISBN_CHECKSUM), 0);
+
+            Output out = new Output(channel, HEADER);
+            Map<String, Integer> authorIds = new HashMap<>();
+            long count = 0;
+            for (Book b : books) {
+                out.writeRecord(b, authorIds);
+                count++;
+            }
+            long end = out.flush();
+            writeFully(channel, header(count, end, LibraryBookTracker.ISBN_CHECKSUM), 0);
+        }
+    }
+
+    @Override
+    public void append(File file, Book book) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) throw corrupt("truncated header");
+            }
+            long count = readHeader(header, channel.size());
+
+            Output out = new Output(channel, header.getLong(END_AT));
+            out.writeRecord(book, null);
+            long end = out.flush();
+            channel.truncate(end);   // anything past the last record is an interrupted append
+            channel.force(false);
+
+            boolean checksums = LibraryBookTracker.ISBN_CHECKSUM
+                && (header.get(FLAGS_AT) & ISBN_CHECKSUMS) != 0;
+            writeFully(channel, header(count + 1, end, checksums), 0);
+        }
+    }
+
+    private static ByteBuffer header(long count, long end, boolean isbnChecksums) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.put(MAGIC).put(VERSION).put(isbnChecksums ? ISBN_CHECKSUMS : 0)
+              .putShort((short) 0).putLong(count).putLong(end);
+        return header.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position)
+            throws IOException {
+        while (buf.hasRemaining()) position += channel.write(buf, position);
+    }
+
+    private static IOException corrupt(String detail) {
+        return new IOException("Corrupt binary catalog: " + detail);
+    }
+
+    /** Buffered, positional record writer. */
+    private static final class Output {
+        private final FileChannel channel;
+        private ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        private long position;   // file position of buf[0]
+
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        /**
+         * Writes one record, defining its author inline unless authorIds
+         * already has it; a null map defines every author inline.
+         */
+        void writeRecord(Book b, Map<String, Integer> authorIds) throws IOException {
+            writeString(b.getTitle().getBytes(StandardCharsets.UTF_8));
+            Integer id = (authorIds != null) ? authorIds.get(b.getAuthor()) : null;
+            if (id != null) {
+                writeVarint(id + 1);
+            } else {
+                if (authorIds != null) authorIds.put(b.getAuthor(), authorIds.size());
+                writeVarint(0);
+                writeString(b.getAuthor().getBytes(StandardCharsets.UTF_8));
+            }
+            ensure(Long.BYTES);
+            buf.putLong(b.getIsbnValue());
+            writeVarint(b.getCopies());
+        }
+
+        private void writeString(byte[] bytes) throws IOException {
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            buf.put(bytes);
+        }
+
+        private void writeVarint(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buf.put((byte) value);
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() >= n) return;
+            flush();
+            if (buf.capacity() < n) buf = ByteBuffer.allocate(n);
+        }
+
+        /** Writes out the buffer; returns the file position just past it. */
+        long flush() throws IOException {
+            buf.flip();
+            writeFully(channel, buf, position);
+            position += buf.limit();
+            buf.clear();
+            return position;
+        }
+    }
+
+    /** Buffered sequential reader; running out of file mid-record means corruption. */
+    private static final class Input {
+        private final FileChannel channel;
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /** Makes at least n bytes available at buf.position(). */
+        void require(int n) throws IOException {
+            if (buf.remaining() >= n) return;
+            buf.compact();
+            if (buf.capacity() < n) {
+                buf = ByteBuffer.allocate(n).put(buf.flip());
+            }
+            while (buf.position() < n) {
+                if (channel.read(buf) < 0) throw corrupt("unexpected end of file");
+            }
+            buf.flip();
+        }
+
+        String readString() throws IOException {
+            int length = readVarint();
+            // A corrupt length must not turn into a huge or negative allocation
+            if (length < 0 || length > channel.size()) {
+                throw corrupt("string length " + Integer.toUnsignedLong(length)
+                    + " is past the end of the file");
+            }
+            require(length);
+            int start = buf.position();
+            buf.position(start + length);
+            return new String(buf.array(), start, length, StandardCharsets.UTF_8);
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                require(1);
+                int b = buf.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw corrupt("varint too long");
+        }
+
+        long readLong() throws IOException {
+            require(Long.BYTES);
+            return buf.getLong();
+        }
+    }
+}
@@ -1,28 +1,48 @@
 /**
  * Represents a single book record in the library catalog.
  * A book has a title, author, 13-digit ISBN, and a positive copies count.
+ * The ISBN is held as a primitive long; leading zeros are restored when it
+ * is formatted back to its 13-digit string form.
  */
 public class Book {
+    /** Number of digits in an ISBN-13. */
+    public static final int ISBN_LENGTH = 13;
+
     private final String title;
     private final String author;
-    private final String isbn;
-    private final int copies;
+    private final long   isbn;
+    private final int    copies;
 
-    public Book(String title, String author, String isbn, int copies) {
+    public Book(String title, String author, long isbn, int copies) {
         this.title  = title;
         this.author = author;
         this.isbn   = isbn;
         this.copies = copies;
     }
 
-    public String getTitle()  { return title;  }
-    public String getAuthor() { return author; }
-    public String getIsbn()   { return isbn;   }
-    public int    getCopies() { return copies; }
+    public String getTitle()     { return title;  }
+    public String getAuthor()    { return author; }
+    public long   getIsbnValue() { return isbn;   }
+    public int    getCopies()    { return copies; }
+
+    /** Returns the ISBN as its 13-digit string, including any leading zeros. */
+    public String getIsbn() {
+        return formatISBN(isbn);
+    }
+
+    /** Formats a numeric ISBN as exactly 13 digits, padding with leading zeros. */
+    public static String formatISBN(long isbn) {
+        char[] digits = new char[ISBN_LENGTH];
+        for (int i = ISBN_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + (isbn % 10));
+            isbn /= 10;
+        }
+        return new String(digits);
+    }
 
     /** Returns the catalog file representation: Title:Author:ISBN:Copies */
     public String toFileString() {
-        return title + ":" + author + ":" + isbn + ":" + copies;
+        return title + ":" + author + ":" + formatISBN(isbn) + ":" + copies;
     }
 
     @Override
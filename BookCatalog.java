@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The in-memory library catalog shared by both threads: the books in file
+ * order, held by a BookStore, plus an ISBN index, and optionally a title
+ * index, that are kept up to date as books are added.  Every book sharing
+ * an ISBN is counted in the index so duplicates can still be detected by
+ * the ISBN search.
+ */
+public class BookCatalog {
+    /** Catalog file order: titles compared case-insensitively. */
+    public static final Comparator<Book> TITLE_ORDER =
+        Comparator.comparing(b -> b.getTitle().toLowerCase());
+
+    private final BookStore store;
+    private final ISBNIndex isbnIndex = new ISBNIndex();
+    private final TitleIndex titleIndex;
+    private final AuthorPool authorPool;
+
+    /** Why loading stopped before the end of the file, or null if it completed. */
+    private volatile String loadFailure;
+
+    /** Creates a heap-backed catalog whose keyword searches scan every title. */
+    public BookCatalog() {
+        this(null);
+    }
+
+    /** Creates a heap-backed catalog whose keyword searches consult the given title index. */
+    public BookCatalog(TitleIndex titleIndex) {
+        this(titleIndex, new HeapBookStore());
+    }
+
+    /** Creates a catalog keeping its books in the given (empty) store. */
+    public BookCatalog(TitleIndex titleIndex, BookStore store) {
+        this(titleIndex, store, null);
+    }
+
+    /**
+     * Creates a catalog keeping its books in the given (empty) store, whose
+     * loader shares one author String per distinct author through the pool.
+     */
+    public BookCatalog(TitleIndex titleIndex, BookStore store, AuthorPool authorPool) {
+        this.titleIndex = titleIndex;
+        this.store = store;
+        this.authorPool = authorPool;
+    }
+
+    /** Appends a book to the catalog and records it in the indexes. */
+    public void add(Book b) {
+        int id = store.size();
+        isbnIndex.add(b.getIsbnValue(), id);
+        if (titleIndex != null) titleIndex.add(id, b.getTitle().toLowerCase());
+        store.add(b);
+    }
+
+    /**
+     * Appends a book without indexing it, so a whole catalog can be loaded
+     * first and indexed in one pass; {@link #rebuildIndexes()} must run
+     * before the catalog is searched or added to.
+     */
+    public void append(Book b) {
+        store.add(b);
+    }
+
+    /** Returns how many books carry the given ISBN. */
+    public int countByIsbn(long isbn) {
+        return isbnIndex.count(isbn);
+    }
+
+    /** Returns the first book with the given ISBN, or null if there is none. */
+    public Book findByIsbn(long isbn) {
+        int id = isbnIndex.firstId(isbn);
+        return (id >= 0) ? store.get(id) : null;
+    }
+
+    /**
+     * Returns the books whose titles contain the keyword (case-insensitive),
+     * in catalog order.  The title index, when present, supplies a candidate
+     * set that the store verifies; otherwise the store checks every title.
+     */
+    public List<Book> findByKeyword(String keyword) {
+        String lower = keyword.toLowerCase();
+        List<Book> results = new ArrayList<>();
+        int[] candidates = (titleIndex != null) ? titleIndex.candidates(lower) : null;
+        store.collectTitleMatches(lower, candidates, results);
+        return results;
+    }
+
+    /** Sorts the books by title (case-insensitive) and re-indexes their positions. */
+    public void sortByTitle() {
+        store.sortByTitle();
+        rebuildIndexes();
+    }
+
+    /** Rebuilds the indexes from the books' current positions. */
+    public void rebuildIndexes() {
+        isbnIndex.clear();
+        if (titleIndex != null) titleIndex.clear();
+        for (int i = 0, n = store.size(); i < n; i++) {
+            isbnIndex.add(store.isbnAt(i), i);
+            if (titleIndex != null) titleIndex.add(i, store.titleAt(i).toLowerCase());
+        }
+    }
+
+    /** Returns true if the books are already in title order. */
+    public boolean isSortedByTitle() {
+        for (int i = 1, n = store.size(); i < n; i++) {
+            if (store.compareTitles(i - 1, i) > 0) return false;
+        }
+        return true;
+    }
+
+    /** The books in catalog order; for non-heap stores each is materialized as it is read. */
+    public List<Book> getBooks() { return store.asList(); }
+    public int        size()     { return store.size(); }
+
+    /**
+     * Records that loading stopped before the end of the catalog file, so
+     * this catalog holds only part of it and must never be written back.
+     */
+    public void markIncomplete(String reason) {
+        loadFailure = (reason != null) ? reason : "unknown error";
+    }
+
+    /** True unless loading stopped early; see {@link #markIncomplete(String)}. */
+    public boolean isComplete() { return loadFailure == null; }
+
+    /** Why loading stopped early, or null if it completed. */
+    public String getLoadFailure() { return loadFailure; }
+
+    /** The pool of this catalog's authors, or null if authors are not pooled. */
+    public AuthorPool getAuthorPool() { return authorPool; }
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands parsed books from the catalog reader (Thread 1) to the operation
+ * analyzer (Thread 2) while the file is still being read.  Every book is
+ * passed on to the wrapped sink as usual and also collected into batches
+ * that are pushed through a bounded queue; the reader blocks when the
+ * analyzer falls too far behind.
+ *
+ * The reader must call {@link #finish()} when it is done (also on failure),
+ * after which {@link #take()} returns null once the queue is drained.  All of
+ * the reader's changes to the catalog happen before that end marker is
+ * queued, so the analyzer may use the whole catalog once it has seen it.
+ */
+public class BookPipeline implements CatalogSink {
+    private static final List<Book> END = Collections.emptyList();
+
+    private final CatalogSink delegate;
+    private final BlockingQueue<List<Book>> queue;
+    private final int batchSize;
+    private List<Book> batch;
+    private boolean ended;   // only touched by the consuming thread
+
+    public BookPipeline(CatalogSink delegate, int queueCapacity, int batchSize) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public void accept(Book book) {
+        delegate.accept(book);
+        batch.add(book);
+        if (batch.size() == batchSize) {
+            put(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    @Override
+    public void reject(String line, BookCatalogException e) {
+        delegate.reject(line, e);
+    }
+
+    @Override
+    public AuthorPool authorPool() {
+        return delegate.authorPool();   // the delegate runs on the reader's thread
+    }
+
+    /** Pushes the last partial batch and the end-of-stream marker. */
+    public void finish() {
+        if (!batch.isEmpty()) put(batch);
+        batch = new ArrayList<>(0);
+        put(END);
+    }
+
+    /**
+     * Returns the next batch of books, or null once the reader has finished
+     * (and on every call after that).
+     */
+    public List<Book> take() throws InterruptedException {
+        if (ended) return null;
+        List<Book> next = queue.take();
+        if (next == END) {
+            ended = true;
+            return null;
+        }
+        return next;
+    }
+
+    /**
+     * Queues the batch even if the reader is interrupted while it waits for
+     * room: a lost batch or end marker would leave the analyzer waiting in
+     * take() forever.  The interrupt is restored once the batch is queued.
+     */
+    private void put(List<Book> books) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(books);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,41 @@
+import java.util.List;
+
+/**
+ * Holds the catalog's books by position.  BookCatalog keeps the indexes on
+ * top of a store; the store only keeps the records, materializes a Book
+ * when one is needed (to print it, or to write the catalog back out), and
+ * answers the per-record questions that searches and sorting ask without
+ * materializing anything.
+ */
+public interface BookStore {
+    /** Number of books stored. */
+    int size();
+
+    /** Appends a book at position size(). */
+    void add(Book b);
+
+    /** Returns the book at the position. */
+    Book get(int id);
+
+    /** ISBN of the book at the position. */
+    long isbnAt(int id);
+
+    /** Title of the book at the position. */
+    String titleAt(int id);
+
+    /**
+     * Adds to {@code results}, in position order, every book whose lowercased
+     * title contains {@code lowerKeyword}: the books at the given ascending
+     * positions, or all books if {@code ids} is null.
+     */
+    void collectTitleMatches(String lowerKeyword, int[] ids, List<Book> results);
+
+    /** Compares two stored books as BookCatalog.TITLE_ORDER does. */
+    int compareTitles(int a, int b);
+
+    /** Sorts the books into BookCatalog.TITLE_ORDER, keeping equal titles in their order. */
+    void sortByTitle();
+
+    /** Read-only view of the books in position order, materialized as they are read. */
+    List<Book> asList();
+}
@@ -0,0 +1,30 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** JFR event covering one successful add, including the catalog write. */
+@Name("library.CatalogAdd")
+@Label("Catalog Add")
+@Category("Library Book Tracker")
+@Description("A book added to the catalog")
+public class CatalogAddEvent extends jdk.jfr.Event {
+    @Label("ISBN")
+    public String isbn;
+
+    @Label("Add Mode")
+    @Description("How the add reached the file: rewrite, append or wal")
+    public String mode;
+
+    @Label("Bytes Written")
+    @Description("Bytes written to the catalog file or write-ahead log")
+    @DataAmount(DataAmount.BYTES)
+    public long bytesWritten;
+
+    @Label("Sort Time")
+    @Description("Time spent sorting and re-indexing the catalog (rewrite mode only)")
+    @Timespan(Timespan.NANOSECONDS)
+    public long sortTime;
+}
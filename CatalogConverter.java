@@ -0,0 +1,76 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Converts a catalog between the text, binary and compressed formats.  The
+ * input's format is detected from its contents; the output is written as
+ * binary if the input is text and as text otherwise, unless a format is
+ * named.  Text lines that fail validation
+ * (with the same rules and options as LibraryBookTracker, including
+ * -Dlibrary.isbn.checksum) are left out and counted in the summary.
+ *
+ * Usage: java [options] CatalogConverter <inputFile> <outputFile> [text|binary|compressed]
+ *
+ * A binary or compressed catalog can be used by LibraryBookTracker in place
+ * of the text one under the same file name; adds keep it in its format.
+ */
+public class CatalogConverter {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println(
+                "Error: Usage: java CatalogConverter <inputFile> <outputFile> [text|binary|compressed]");
+            System.exit(1);
+        }
+
+        File input  = new File(args[0]);
+        File output = new File(args[1]);
+        long start = System.nanoTime();
+        try {
+            if (!input.isFile()) {
+                throw new IOException("No such catalog: " + input);
+            }
+            CatalogFormat from = CatalogFormat.of(input);
+            CatalogFormat to;
+            if (args.length > 2) {
+                to = formatNamed(args[2]);
+            } else {
+                to = (from == CatalogFormat.TEXT) ? CatalogFormat.BINARY : CatalogFormat.TEXT;
+            }
+
+            RecordingSink records = new RecordingSink();
+            from.read(input, records);
+            List<Book> books = records.getBooks();
+            to.write(output, books);
+
+            System.err.printf("Converted %d books from %s (%d bytes) to %s (%d bytes) in %.1f s,"
+                    + " %d invalid lines skipped%n",
+                books.size(), nameOf(from), input.length(), nameOf(to), output.length(),
+                (System.nanoTime() - start) / 1e9, records.getRejections().size());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("File I/O Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static CatalogFormat formatNamed(String name) {
+        switch (name) {
+            case "text":       return CatalogFormat.TEXT;
+            case "binary":     return CatalogFormat.BINARY;
+            case "compressed": return CatalogFormat.COMPRESSED;
+            default:
+                throw new IllegalArgumentException(
+                    "Format must be \"text\", \"binary\" or \"compressed\": \"" + name + "\"");
+        }
+    }
+
+    private static String nameOf(CatalogFormat format) {
+        if (format == CatalogFormat.BINARY)     return "binary";
+        if (format == CatalogFormat.COMPRESSED) return "compressed";
+        return "text";
+    }
+}
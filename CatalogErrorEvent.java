@@ -0,0 +1,21 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event for every error written to errors.log. */
+@Name("library.CatalogError")
+@Label("Catalog Error")
+@Category("Library Book Tracker")
+@Description("An error logged to errors.log")
+public class CatalogErrorEvent extends jdk.jfr.Event {
+    @Label("Context")
+    @Description("What was being processed, as written to errors.log")
+    public String context;
+
+    @Label("Error Type")
+    public String errorType;
+
+    @Label("Message")
+    public String message;
+}
@@ -0,0 +1,42 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * How a catalog file is laid out on disk.  The format of an existing
+ * catalog is detected from its first bytes, and every write goes back in
+ * that same format, so adds and compaction never convert a catalog; only
+ * CatalogConverter does.
+ */
+public interface CatalogFormat {
+    /** "Title:Author:ISBN:Copies" lines in the platform charset. */
+    CatalogFormat TEXT = new TextCatalogFormat();
+
+    /** Pre-validated binary records; see BinaryCatalogFormat. */
+    CatalogFormat BINARY = new BinaryCatalogFormat();
+
+    /** Text lines in independently compressed blocks; see CompressedCatalogFormat. */
+    CatalogFormat COMPRESSED = new CompressedCatalogFormat();
+
+    /** Feeds every record of the file to the sink, in file order. */
+    void read(File file, CatalogSink sink) throws IOException;
+
+    /** Replaces the contents of the file with the books, in list order. */
+    void write(File file, List<Book> books) throws IOException;
+
+    /** Adds one book at the end of the file. */
+    void append(File file, Book book) throws IOException;
+
+    /** Returns the format of the file; empty and missing files are text. */
+    static CatalogFormat of(File file) throws IOException {
+        byte[] head = new byte[4];
+        if (!file.isFile() || file.length() < head.length) return TEXT;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.readFully(head);
+        }
+        if (BinaryCatalogFormat.isMagic(head))     return BINARY;
+        if (CompressedCatalogFormat.isMagic(head)) return COMPRESSED;
+        return TEXT;
+    }
+}
@@ -0,0 +1,379 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Writes synthetic "Title:Author:ISBN:Copies" catalogs of any size for load
+ * and scale testing.  The output is deterministic for a given seed and is
+ * produced straight into a byte buffer, so even 100M-line files take only
+ * minutes (the disk is usually the limit).
+ *
+ * Usage: java [options] CatalogGenerator <outputFile|-> <lineCount>
+ *
+ * Options (system properties, defaults in brackets):
+ *   -Dgenerator.seed=N               random seed [42]
+ *   -Dgenerator.title.meanWords=D    mean title length in words; lengths are
+ *                                    geometrically distributed from 1 [3.0]
+ *   -Dgenerator.title.maxWords=N     longest title in words [12]
+ *   -Dgenerator.vocabulary=N         distinct title words [10000]
+ *   -Dgenerator.zipf=D               Zipf exponent of the title word
+ *                                    frequencies, 0 for uniform [1.0]
+ *   -Dgenerator.authors=N            distinct authors [50000]
+ *   -Dgenerator.duplicateRate=D      fraction of valid lines reusing an ISBN
+ *                                    already written [0]
+ *   -Dgenerator.malformedRate=D      fraction of lines that fail with a
+ *                                    MalformedBookEntryException [0]
+ *   -Dgenerator.invalidIsbnRate=D    fraction of lines that fail with an
+ *                                    InvalidISBNException [0]
+ *
+ * Malformed lines are spread evenly over the ways LibraryBookTracker can
+ * reject them (wrong field count, empty title, empty author, non-numeric or
+ * non-positive copies; non-numeric or wrong-length ISBN).  Valid ISBNs carry
+ * a correct ISBN-13 check digit.  The file is not sorted by title.
+ */
+public class CatalogGenerator {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long ISBN_PREFIX = 978_000_000_000L;   // 12 digits, check digit appended
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ra", "ten", "do", "vi", "sar", "nu", "pe", "gor", "li",
+        "an", "be", "ric", "tho", "mas", "el", "ja", "son", "da", "ter", "os", "qui"
+    };
+
+    private final SplittableRandom random;
+    private final double meanWords;
+    private final int maxWords;
+    private final byte[][] words;          // capitalised, by Zipf rank
+    private final ZipfSampler wordSampler;
+    private final byte[][] authors;
+    private final double duplicateRate;
+    private final double malformedRate;
+    private final double invalidIsbnRate;
+
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private final int flushAt;             // leaves room for the longest possible line
+    private int pos;
+    private long uniqueIsbns;
+
+    // Totals for the summary
+    private long validLines;
+    private long duplicateLines;
+    private long malformedLines;
+    private long invalidIsbnLines;
+    private long bytesWritten;
+
+    CatalogGenerator() {
+        random          = new SplittableRandom(Long.getLong("generator.seed", 42L));
+        meanWords       = doubleProperty("generator.title.meanWords", 3.0);
+        maxWords        = Integer.getInteger("generator.title.maxWords", 12);
+        int vocabulary  = Integer.getInteger("generator.vocabulary", 10_000);
+        double zipf     = doubleProperty("generator.zipf", 1.0);
+        int authorCount = Integer.getInteger("generator.authors", 50_000);
+        duplicateRate   = doubleProperty("generator.duplicateRate", 0.0);
+        malformedRate   = doubleProperty("generator.malformedRate", 0.0);
+        invalidIsbnRate = doubleProperty("generator.invalidIsbnRate", 0.0);
+
+        if (meanWords < 1 || maxWords < 1 || vocabulary < 1 || authorCount < 1 || zipf < 0
+                || duplicateRate < 0 || duplicateRate > 1
+                || malformedRate < 0 || invalidIsbnRate < 0 || malformedRate + invalidIsbnRate > 1) {
+            throw new IllegalArgumentException("generator options out of range");
+        }
+
+        words = new byte[vocabulary][];
+        for (int i = 0; i < vocabulary; i++) {
+            words[i] = ascii(capitalise(pseudoWord(i)));
+        }
+        wordSampler = new ZipfSampler(vocabulary, zipf);
+
+        authors = new byte[authorCount][];
+        for (int i = 0; i < authorCount; i++) {
+            // Two names drawn from disjoint parts of the word space
+            String first = capitalise(pseudoWord(i % 997 + 7));
+            String last  = capitalise(pseudoWord(i / 997 + 1_000));
+            authors[i] = ascii(first + " " + last);
+        }
+
+        int longestLine = maxWords * (longest(words) + 1) + longest(authors) + 64;
+        if (longestLine > BUFFER_SIZE / 2) {
+            throw new IllegalArgumentException("generator.title.maxWords is too large");
+        }
+        flushAt = BUFFER_SIZE - longestLine;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Error: Usage: java CatalogGenerator <outputFile|-> <lineCount>");
+            System.exit(1);
+        }
+
+        long lines;
+        try {
+            lines = Long.parseLong(args[1]);
+            if (lines < 0) throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            System.err.println("Error: lineCount must be a non-negative integer: \"" + args[1] + "\"");
+            System.exit(1);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            CatalogGenerator generator = new CatalogGenerator();
+            if (args[0].equals("-")) {
+                generator.generate(System.out, lines);
+            } else {
+                try (OutputStream out = new FileOutputStream(args[0])) {
+                    generator.generate(out, lines);
+                }
+            }
+            generator.printSummary(System.nanoTime() - start);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("File I/O Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Writes {@code lines} catalog lines to the stream. */
+    void generate(OutputStream out, long lines) throws IOException {
+        for (long i = 0; i < lines; i++) {
+            if (pos > flushAt) flush(out);
+
+            double r = random.nextDouble();
+            if (r < malformedRate) {
+                writeMalformedLine();
+                malformedLines++;
+            } else if (r < malformedRate + invalidIsbnRate) {
+                writeInvalidIsbnLine();
+                invalidIsbnLines++;
+            } else {
+                boolean duplicate = uniqueIsbns > 0 && random.nextDouble() < duplicateRate;
+                writeTitle();
+                put(':');
+                writeAuthor();
+                put(':');
+                writeIsbn(duplicate ? random.nextLong(uniqueIsbns) : uniqueIsbns++);
+                put(':');
+                writeInt(1 + random.nextInt(20));
+                validLines++;
+                if (duplicate) duplicateLines++;
+            }
+            put('\n');
+        }
+        flush(out);
+        out.flush();
+    }
+
+    private void writeMalformedLine() {
+        switch (random.nextInt(5)) {
+            case 0:     // three fields
+                writeTitle();
+                put(':');
+                writeAuthor();
+                put(':');
+                writeIsbn(uniqueIsbns);
+                break;
+            case 1:     // blank title
+                put(' ');
+                put(':');
+                writeAuthor();
+                put(':');
+                writeIsbn(uniqueIsbns);
+                put(':');
+                writeInt(1 + random.nextInt(20));
+                break;
+            case 2:     // blank author
+                writeTitle();
+                put(':');
+                put(':');
+                writeIsbn(uniqueIsbns);
+                put(':');
+                writeInt(1 + random.nextInt(20));
+                break;
+            case 3:     // copies not an integer
+                writeTitle();
+                put(':');
+                writeAuthor();
+                put(':');
+                writeIsbn(uniqueIsbns);
+                put(':');
+                writeInt(1 + random.nextInt(20));
+                put('x');
+                break;
+            default:    // copies not positive
+                writeTitle();
+                put(':');
+                writeAuthor();
+                put(':');
+                writeIsbn(uniqueIsbns);
+                put(':');
+                int copies = random.nextInt(10);
+                if (copies > 0) put('-');
+                writeInt(copies);
+                break;
+        }
+    }
+
+    private void writeInvalidIsbnLine() {
+        writeTitle();
+        put(':');
+        writeAuthor();
+        put(':');
+        int isbnStart = pos;
+        writeIsbn(uniqueIsbns);
+        if (random.nextBoolean()) {
+            buf[isbnStart + random.nextInt(Book.ISBN_LENGTH)] = 'X';
+        } else {
+            pos -= 1 + random.nextInt(Book.ISBN_LENGTH - 1);    // 1 to 12 digits
+        }
+        put(':');
+        writeInt(1 + random.nextInt(20));
+    }
+
+    private void writeTitle() {
+        // Geometric length with the configured mean, truncated at maxWords
+        double stop = 1.0 / meanWords;
+        int count = 1;
+        while (count < maxWords && random.nextDouble() >= stop) count++;
+
+        for (int w = 0; w < count; w++) {
+            if (w > 0) put(' ');
+            put(words[wordSampler.sample(random)]);
+        }
+    }
+
+    private void writeAuthor() {
+        put(authors[random.nextInt(authors.length)]);
+    }
+
+    /** Writes the 13-digit ISBN with serial number {@code n} and its check digit. */
+    private void writeIsbn(long n) {
+        long body = ISBN_PREFIX + n;
+        int sum = 0;
+        for (int i = 11; i >= 0; i--) {
+            int digit = (int) (body % 10);
+            body /= 10;
+            buf[pos + i] = (byte) ('0' + digit);
+            sum += (i % 2 == 0) ? digit : 3 * digit;
+        }
+        buf[pos + 12] = (byte) ('0' + (10 - sum % 10) % 10);
+        pos += Book.ISBN_LENGTH;
+    }
+
+    private void writeInt(int value) {
+        if (value >= 10) writeInt(value / 10);
+        put((char) ('0' + value % 10));
+    }
+
+    private void put(char c) {
+        buf[pos++] = (byte) c;
+    }
+
+    private void put(byte[] bytes) {
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void flush(OutputStream out) throws IOException {
+        out.write(buf, 0, pos);
+        bytesWritten += pos;
+        pos = 0;
+    }
+
+    private void printSummary(long nanos) {
+        System.err.println("Lines written:        " + (validLines + malformedLines + invalidIsbnLines));
+        System.err.println("Valid records:        " + validLines
+            + " (" + duplicateLines + " with a duplicate ISBN)");
+        System.err.println("Malformed entries:    " + malformedLines);
+        System.err.println("Invalid ISBNs:        " + invalidIsbnLines);
+        System.err.printf("Bytes written:        %d in %.1f s%n", bytesWritten, nanos / 1e9);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /** A deterministic, pronounceable word made of syllables for the number. */
+    private static String pseudoWord(int n) {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return sb.toString();
+    }
+
+    private static String capitalise(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static int longest(byte[][] strings) {
+        int max = 0;
+        for (byte[] s : strings) max = Math.max(max, s.length);
+        return max;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static double doubleProperty(String name, double def) {
+        String value = System.getProperty(name);
+        if (value == null) return def;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a number: \"" + value + "\"");
+        }
+    }
+
+    /**
+     * Draws ranks 0..n-1 with probability proportional to 1/(rank+1)^s in
+     * constant time, using Vose's alias method.
+     */
+    private static final class ZipfSampler {
+        private final double[] probability;
+        private final int[] alias;
+
+        ZipfSampler(int n, double s) {
+            double[] weight = new double[n];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                weight[i] = Math.pow(i + 1, -s);
+                total += weight[i];
+            }
+
+            probability = new double[n];
+            alias = new int[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallCount = 0, largeCount = 0;
+            for (int i = 0; i < n; i++) {
+                weight[i] = weight[i] * n / total;
+                if (weight[i] < 1.0) small[smallCount++] = i;
+                else                 large[largeCount++] = i;
+            }
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+                probability[less] = weight[less];
+                alias[less] = more;
+                weight[more] = (weight[more] + weight[less]) - 1.0;
+                if (weight[more] < 1.0) small[smallCount++] = more;
+                else                    large[largeCount++] = more;
+            }
+            while (largeCount > 0) probability[large[--largeCount]] = 1.0;
+            while (smallCount > 0) probability[small[--smallCount]] = 1.0;
+        }
+
+        int sample(SplittableRandom random) {
+            int column = random.nextInt(probability.length);
+            return (random.nextDouble() < probability[column]) ? column : alias[column];
+        }
+    }
+}
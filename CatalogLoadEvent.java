@@ -0,0 +1,37 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering one read of the catalog file (Thread 1), from the
+ * first byte to the last line handed to the catalog.
+ */
+@Name("library.CatalogLoad")
+@Label("Catalog Load")
+@Category("Library Book Tracker")
+@Description("Reading and parsing the catalog file")
+public class CatalogLoadEvent extends jdk.jfr.Event {
+    @Label("Catalog File")
+    public String file;
+
+    @Label("Reader")
+    @Description("Where the records came from: buffered, mapped or parallel text reader,"
+        + " sidecar, binary or compressed")
+    public String reader;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Lines")
+    @Description("Lines read, including those from the write-ahead log")
+    public long lines;
+
+    @Label("Valid Records")
+    public long valid;
+
+    @Label("Invalid Lines")
+    public long invalid;
+}
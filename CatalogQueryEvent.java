@@ -0,0 +1,23 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event covering one ISBN or keyword search, including printing its results. */
+@Name("library.CatalogQuery")
+@Label("Catalog Query")
+@Category("Library Book Tracker")
+@Description("An ISBN or keyword search")
+public class CatalogQueryEvent extends jdk.jfr.Event {
+    @Label("Query Type")
+    @Description("isbn or keyword")
+    public String queryType;
+
+    @Label("Query")
+    @Description("The ISBN or keyword searched for")
+    public String query;
+
+    @Label("Results")
+    @Description("Matching books; above one for an ISBN search means a duplicate ISBN")
+    public int results;
+}
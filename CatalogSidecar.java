@@ -0,0 +1,240 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Sidecar file ("books.txt.idx") holding the already parsed and validated
+ * contents of a catalog file: every accepted book and every rejected line
+ * with its error, in line order.  Loading a matching sidecar replays those
+ * results without decoding, splitting or validating the catalog again, so
+ * errors.log and the statistics come out exactly as with a full parse.
+ *
+ * The header stamps the catalog's size, modification time and CRC-32C, the
+ * charset it was decoded with and whether ISBN check digits were verified;
+ * if any of them no longer matches, the sidecar is stale and the caller
+ * re-parses the catalog and rewrites it.
+ */
+public class CatalogSidecar {
+    private static final int MAGIC   = 0x4C425449; // "LBTI"
+    private static final int VERSION = 2;
+
+    private static final byte BOOK_ENTRY     = 0;
+    private static final byte REJECTED_ENTRY = 1;
+
+    /** Largest region mapped at once. */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    private final File catalogFile;
+    private final File sidecarFile;
+    private final Charset charset;
+    private final boolean isbnChecksums;
+
+    public CatalogSidecar(File catalogFile, Charset charset, boolean isbnChecksums) {
+        this.catalogFile = catalogFile;
+        this.sidecarFile = new File(catalogFile.getPath() + ".idx");
+        this.charset = charset;
+        this.isbnChecksums = isbnChecksums;
+    }
+
+    public File getSidecarFile() { return sidecarFile; }
+
+    /**
+     * Size, modification time and checksum of the catalog file as it is on
+     * disk right now.
+     */
+    public Stamp stampCatalog() throws IOException {
+        long size = catalogFile.length();
+        long modified = catalogFile.lastModified();
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(catalogFile.toPath(), StandardOpenOption.READ)) {
+            for (long position = 0; position < size; ) {
+                int length = (int) Math.min(WINDOW_SIZE, size - position);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                position += length;
+            }
+        }
+        return new Stamp(size, modified, crc.getValue());
+    }
+
+    /** True if the catalog's size and modification time still match the stamp. */
+    public boolean unchangedSince(Stamp stamp) {
+        return catalogFile.length() == stamp.size && catalogFile.lastModified() == stamp.modified;
+    }
+
+    /**
+     * Replays the sidecar into the sink if it matches the catalog's current
+     * stamp.  Returns false, without touching the sink, if there is no
+     * sidecar or it is stale or unreadable.
+     */
+    public boolean load(Stamp stamp, CatalogSink sink) throws IOException {
+        if (!sidecarFile.exists()) return false;
+
+        try (FileChannel channel = FileChannel.open(sidecarFile.toPath(), StandardOpenOption.READ)) {
+            MappedInput in = new MappedInput(channel);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != stamp.size
+                    || in.readLong() != stamp.modified
+                    || in.readLong() != stamp.checksum
+                    || !in.readString().equals(charset.name())
+                    || (in.readByte() != 0) != isbnChecksums) {
+                return false;
+            }
+            long entries = in.readLong();
+
+            // Decode everything first so a truncated sidecar never half-fills the sink
+            RecordingSink records = new RecordingSink();
+            for (long i = 0; i < entries; i++) {
+                byte kind = in.readByte();
+                if (kind == BOOK_ENTRY) {
+                    String title  = in.readString();
+                    String author = in.readString();
+                    long   isbn   = in.readLong();
+                    int    copies = in.readInt();
+                    records.accept(new Book(title, author, isbn, copies));
+                } else {
+                    String line    = in.readString();
+                    String type    = in.readString();
+                    String message = in.readString();
+                    records.reject(line, recreate(type, message));
+                }
+            }
+            records.replayTo(sink);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // Truncated or corrupt sidecar: treat it as stale
+            return false;
+        }
+    }
+
+    /**
+     * Writes the parse results for the catalog state described by the stamp.
+     * The file is written next to the sidecar and moved into place, so a
+     * reader never sees a partially written sidecar; on failure the
+     * temporary file is deleted.
+     */
+    public void write(Stamp stamp, RecordingSink records) throws IOException {
+        File tmpFile = new File(sidecarFile.getPath() + ".tmp");
+        List<Book> books = records.getBooks();
+        List<RecordingSink.Rejection> rejections = records.getRejections();
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(stamp.size);
+                out.writeLong(stamp.modified);
+                out.writeLong(stamp.checksum);
+                writeString(out, charset.name());
+                out.writeByte(isbnChecksums ? 1 : 0);
+                out.writeLong((long) books.size() + rejections.size());
+
+                int next = 0;
+                for (RecordingSink.Rejection r : rejections) {
+                    for (; next < r.booksBefore; next++) writeBook(out, books.get(next));
+                    out.writeByte(REJECTED_ENTRY);
+                    writeString(out, r.line);
+                    writeString(out, r.error.getClass().getSimpleName());
+                    writeString(out, r.error.getMessage());
+                }
+                for (; next < books.size(); next++) writeBook(out, books.get(next));
+            }
+            Files.move(tmpFile.toPath(), sidecarFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tmpFile.delete();   // never leave a half-written sidecar behind
+            throw e;
+        }
+    }
+
+    private static void writeBook(DataOutputStream out, Book b) throws IOException {
+        out.writeByte(BOOK_ENTRY);
+        writeString(out, b.getTitle());
+        writeString(out, b.getAuthor());
+        out.writeLong(b.getIsbnValue());
+        out.writeInt(b.getCopies());
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Rebuilds a recorded parse error with its original type and message. */
+    private static BookCatalogException recreate(String type, String message) {
+        switch (type) {
+            case "InvalidISBNException":        return new InvalidISBNException(message);
+            case "MalformedBookEntryException": return new MalformedBookEntryException(message);
+            default:                            return new BookCatalogException(message);
+        }
+    }
+
+    /** Size, modification time and CRC-32C of a catalog file. */
+    public static class Stamp {
+        final long size;
+        final long modified;
+        final long checksum;
+
+        Stamp(long size, long modified, long checksum) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * Sequential reader over a memory-mapped file that maps it one window at
+     * a time, remapping whenever a value would cross the end of the window.
+     */
+    private static class MappedInput {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buf;
+        private long bufStart;
+
+        MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        byte readByte() throws IOException { ensure(1); return buf.get();     }
+        int  readInt()  throws IOException { ensure(4); return buf.getInt();  }
+        long readLong() throws IOException { ensure(8); return buf.getLong(); }
+
+        String readString() throws IOException {
+            int length = readInt();
+            ensure(length);
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) return;
+            long position = bufStart + buf.position();
+            if (size - position < bytes) {
+                throw new IOException("Sidecar truncated at offset " + position);
+            }
+            map(position);
+        }
+
+        private void map(long position) throws IOException {
+            bufStart = position;
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(WINDOW_SIZE, size - position));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Receives the outcome of every non-empty catalog line read by a catalog
+ * reader: either the parsed book or the (trimmed) line and the validation
+ * error that rejected it.
+ */
+public interface CatalogSink {
+    void accept(Book book);
+
+    void reject(String line, BookCatalogException e);
+
+    /**
+     * The pool the receiving catalog keeps its authors in, so a reader can
+     * look each line's author up before copying it, or null if there is none.
+     * Only offered by sinks that consume books on the reader's own thread.
+     */
+    default AuthorPool authorPool() {
+        return null;
+    }
+}
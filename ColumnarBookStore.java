@@ -0,0 +1,183 @@
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Keeps the books column by column in primitive arrays: ISBNs in a long[],
+ * copies in an int[], authors as int ids into an AuthorPool, and every
+ * title's UTF-8 bytes packed end to end in one byte[] with an int[] of
+ * offsets.  A keyword scan walks one contiguous byte[] and the ISBN index
+ * is rebuilt from one long[], instead of following a Book and its Strings
+ * per record.  A Book is only materialized when one is printed or written
+ * back to the file.
+ *
+ * The packed titles are limited to 2 GiB in total.
+ */
+public class ColumnarBookStore implements BookStore {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] isbns     = new long[INITIAL_CAPACITY];
+    private int[]  copies    = new int[INITIAL_CAPACITY];
+    private int[]  authorIds = new int[INITIAL_CAPACITY];
+
+    /** Title of position i is titles[titleOffsets[i], titleOffsets[i + 1]). */
+    private byte[] titles       = new byte[INITIAL_CAPACITY * 32];
+    private int[]  titleOffsets = new int[INITIAL_CAPACITY + 1];
+
+    /** Positions whose title is pure ASCII. */
+    private BitSet asciiTitles = new BitSet();
+
+    private final AuthorPool authors;
+    private int size;
+
+    private final List<Book> view = new BookView();
+
+    /** Creates a store with its own author dictionary. */
+    public ColumnarBookStore() {
+        this(new AuthorPool());
+    }
+
+    /** Creates a store whose author ids refer to the given pool. */
+    public ColumnarBookStore(AuthorPool authors) {
+        this.authors = authors;
+    }
+
+    /** The dictionary the author ids refer to. */
+    public AuthorPool getAuthors() {
+        return authors;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(Book b) {
+        byte[] title = b.getTitle().getBytes(StandardCharsets.UTF_8);
+        if (size == isbns.length) {
+            int capacity = size * 2;
+            isbns        = Arrays.copyOf(isbns, capacity);
+            copies       = Arrays.copyOf(copies, capacity);
+            authorIds    = Arrays.copyOf(authorIds, capacity);
+            titleOffsets = Arrays.copyOf(titleOffsets, capacity + 1);
+        }
+        int start = titleOffsets[size];
+        if (titles.length - start < title.length) {
+            long capacity = Math.max((long) titles.length * 2, (long) start + title.length);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                if ((long) start + title.length > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Columnar store is full: titles exceed 2 GiB");
+                }
+                capacity = Integer.MAX_VALUE - 8;
+            }
+            titles = Arrays.copyOf(titles, (int) capacity);
+        }
+
+        System.arraycopy(title, 0, titles, start, title.length);
+        isbns[size]     = b.getIsbnValue();
+        copies[size]    = b.getCopies();
+        authorIds[size] = authors.idOf(b.getAuthor());
+        if (AsciiText.isAscii(b.getTitle())) asciiTitles.set(size);
+        titleOffsets[++size] = start + title.length;
+    }
+
+    @Override
+    public Book get(int id) {
+        return new Book(titleAt(id), authors.get(authorIds[id]), isbns[id], copies[id]);
+    }
+
+    @Override
+    public long isbnAt(int id) {
+        return isbns[id];
+    }
+
+    @Override
+    public String titleAt(int id) {
+        int start = titleOffsets[id];
+        return new String(titles, start, titleOffsets[id + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void collectTitleMatches(String lowerKeyword, int[] ids, List<Book> results) {
+        byte[] needle = (AsciiText.ASCII_LOWERCASE && AsciiText.isAscii(lowerKeyword))
+            ? AsciiText.utf8(lowerKeyword) : null;
+        if (ids == null) {
+            for (int id = 0; id < size; id++) {
+                if (titleContains(id, lowerKeyword, needle)) results.add(get(id));
+            }
+        } else {
+            for (int id : ids) {
+                if (titleContains(id, lowerKeyword, needle)) results.add(get(id));
+            }
+        }
+    }
+
+    private boolean titleContains(int id, String lowerKeyword, byte[] needle) {
+        if (needle != null && asciiTitles.get(id)) {
+            return AsciiText.containsIgnoreCase(titles, titleOffsets[id], titleOffsets[id + 1], needle);
+        }
+        return titleAt(id).toLowerCase().contains(lowerKeyword);
+    }
+
+    @Override
+    public int compareTitles(int a, int b) {
+        if (AsciiText.ASCII_LOWERCASE && asciiTitles.get(a) && asciiTitles.get(b)) {
+            return AsciiText.compareIgnoreCase(titles, titleOffsets[a], titleOffsets[a + 1],
+                                               titles, titleOffsets[b], titleOffsets[b + 1]);
+        }
+        return titleAt(a).toLowerCase().compareTo(titleAt(b).toLowerCase());
+    }
+
+    /**
+     * Sorts by computing the title order and then rewriting every column in
+     * that order, so the titles stay packed in position order afterwards.
+     */
+    @Override
+    public void sortByTitle() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        IntList.sort(order, this::compareTitles);
+
+        long[]  sortedIsbns     = new long[isbns.length];
+        int[]   sortedCopies    = new int[copies.length];
+        int[]   sortedAuthorIds = new int[authorIds.length];
+        byte[]  sortedTitles    = new byte[titles.length];
+        int[]   sortedOffsets   = new int[titleOffsets.length];
+        BitSet  sortedAscii     = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            sortedIsbns[i]     = isbns[id];
+            sortedCopies[i]    = copies[id];
+            sortedAuthorIds[i] = authorIds[id];
+            if (asciiTitles.get(id)) sortedAscii.set(i);
+            int start  = titleOffsets[id];
+            int length = titleOffsets[id + 1] - start;
+            System.arraycopy(titles, start, sortedTitles, sortedOffsets[i], length);
+            sortedOffsets[i + 1] = sortedOffsets[i] + length;
+        }
+        isbns        = sortedIsbns;
+        copies       = sortedCopies;
+        authorIds    = sortedAuthorIds;
+        titles       = sortedTitles;
+        titleOffsets = sortedOffsets;
+        asciiTitles  = sortedAscii;
+    }
+
+    @Override
+    public List<Book> asList() {
+        return view;
+    }
+
+    /** Materializes each book as it is read. */
+    private final class BookView extends AbstractList<Book> implements RandomAccess {
+        @Override public Book get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            return ColumnarBookStore.this.get(index);
+        }
+        @Override public int size() { return size; }
+    }
+}
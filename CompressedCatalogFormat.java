@@ -0,0 +1,379 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block-compressed text catalog, in the spirit of BGZF: ordinary catalog
+ * lines (platform charset, as in the text format) cut into blocks of about
+ * 64 KiB of whole lines, each compressed on its own as a raw DEFLATE stream,
+ * followed by an index of the blocks.  Because every block stands alone,
+ * the blocks are inflated and parsed concurrently on the common
+ * ForkJoinPool and the results replayed to the sink in file order, so the
+ * sink sees the same sequence as with a sequential reader.  Only a few
+ * blocks per pool thread are in flight at once, reading or writing, so
+ * memory stays bounded however large the catalog is.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header   magic 0x89 'L' 'B' 'Z', version (1 byte), 3 reserved bytes
+ *   blocks   raw DEFLATE data, one stream per block, back to back
+ *   index    per block: compressed length (int), uncompressed length (int),
+ *            CRC-32 of the uncompressed bytes (int)
+ *   trailer  block count (int), index offset (long), magic (4 bytes)
+ * </pre>
+ * An append recompresses the last block with the new line when it still
+ * has room, or adds a block, and rewrites the index and trailer.  It writes
+ * a new file and renames it over the catalog, so an interrupted append
+ * leaves the catalog as it was; the copy makes an append cost a pass over
+ * the compressed file, which -Dlibrary.add=wal avoids.
+ */
+public class CompressedCatalogFormat implements CatalogFormat {
+    private static final byte[] MAGIC = { (byte) 0x89, 'L', 'B', 'Z' };
+    private static final byte VERSION = 1;
+    private static final int HEADER      = 8;
+    private static final int INDEX_ENTRY = 12;
+    private static final int TRAILER     = 16;
+
+    /** Uncompressed bytes a block is filled to; a single longer line gets a block of its own. */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /** True if the first bytes of a file are this format's magic. */
+    static boolean isMagic(byte[] head) {
+        return Arrays.equals(head, MAGIC);
+    }
+
+    /** One block as listed in the index. */
+    private static final class Block {
+        final long offset;
+        final int compressedLength;
+        final int length;
+        final int crc;
+
+        Block(long offset, int compressedLength, int length, int crc) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    @Override
+    public void read(File file, CatalogSink sink) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<Block> blocks = readIndex(channel);
+
+            // A bounded window of blocks in flight; each result is dropped once replayed
+            Deque<ForkJoinTask<RecordingSink>> pending = new ArrayDeque<>();
+            int maxPending = pool.getParallelism() * 2;
+            int next = 0;
+            try {
+                while (next < blocks.size() || !pending.isEmpty()) {
+                    while (next < blocks.size() && pending.size() < maxPending) {
+                        pending.add(pool.submit(new ParseTask(channel, blocks.get(next), next, charset)));
+                        next++;
+                    }
+                    pending.remove().join().replayTo(sink);
+                }
+            } catch (UncheckedIOException e) {
+                for (ForkJoinTask<RecordingSink> task : pending) task.cancel(false);
+                throw e.getCause();
+            }
+        }
+    }
+
+    /** Reads and checks the trailer and index; returns the blocks in file order. */
+    private static List<Block> readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER + TRAILER) throw corrupt("file too short");
+        ByteBuffer header = readFully(channel, 0, HEADER);
+        if (header.get(MAGIC.length) != VERSION) {
+            throw corrupt("unsupported version " + header.get(MAGIC.length));
+        }
+        ByteBuffer trailer = readFully(channel, size - TRAILER, TRAILER);
+        int count = trailer.getInt(0);
+        long indexOffset = trailer.getLong(4);
+        byte[] magic = new byte[MAGIC.length];
+        trailer.get(12, magic);
+        if (!Arrays.equals(magic, MAGIC)) throw corrupt("no trailer");
+        if (count < 0 || indexOffset < HEADER
+                || indexOffset + (long) count * INDEX_ENTRY != size - TRAILER) {
+            throw corrupt("bad trailer");
+        }
+
+        ByteBuffer index = readFully(channel, indexOffset, count * INDEX_ENTRY);
+        List<Block> blocks = new ArrayList<>(count);
+        long offset = HEADER;
+        for (int i = 0; i < count; i++) {
+            int compressedLength = index.getInt();
+            int length = index.getInt();
+            int crc = index.getInt();
+            if (compressedLength < 0 || length < 0) throw corrupt("bad index entry " + i);
+            blocks.add(new Block(offset, compressedLength, length, crc));
+            offset += compressedLength;
+        }
+        if (offset != indexOffset) throw corrupt("index does not match the blocks");
+        return blocks;
+    }
+
+    /** Inflates one block, checks it and parses its lines into a private result buffer. */
+    private static final class ParseTask extends RecursiveTask<RecordingSink> {
+        private final FileChannel channel;
+        private final Block block;
+        private final int number;
+        private final Charset charset;
+
+        ParseTask(FileChannel channel, Block block, int number, Charset charset) {
+            this.channel = channel;
+            this.block = block;
+            this.number = number;
+            this.charset = charset;
+        }
+
+        @Override
+        protected RecordingSink compute() {
+            RecordingSink result = new RecordingSink();
+            try {
+                byte[] text = inflate(channel, block, number);
+                if (MappedCatalogReader.supports(charset)) {
+                    new MappedCatalogReader(charset).scan(ByteBuffer.wrap(text), 0, text.length, true, result);
+                } else {
+                    parseLines(new String(text, charset), result);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return result;
+        }
+    }
+
+    /** Splits decoded text into lines as BufferedReader.readLine() does and parses them. */
+    private static void parseLines(String text, CatalogSink sink) {
+        int start = 0;
+        int n = text.length();
+        while (start < n) {
+            int end = start;
+            while (end < n && text.charAt(end) != '\n' && text.charAt(end) != '\r') end++;
+            String line = text.substring(start, end).trim();
+            if (!line.isEmpty()) {
+                try {
+                    sink.accept(LibraryBookTracker.parseAndValidate(line));
+                } catch (BookCatalogException e) {
+                    sink.reject(line, e);
+                }
+            }
+            if (end + 1 < n && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n') end++;
+            start = end + 1;
+        }
+    }
+
+    private static byte[] inflate(FileChannel channel, Block block, int number) throws IOException {
+        ByteBuffer compressed = readFully(channel, block.offset, block.compressedLength);
+        byte[] text = new byte[block.length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < text.length && !inflater.finished()) {
+                int inflated = inflater.inflate(text, n, text.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += inflated;
+            }
+            if (n != text.length) throw corrupt("block " + number + " is truncated");
+        } catch (DataFormatException e) {
+            throw corrupt("block " + number + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(text);
+        if ((int) crc.getValue() != block.crc) throw corrupt("block " + number + " fails its checksum");
+        return text;
+    }
+
+    @Override
+    public void write(File file, List<Book> books) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header(), 0);
+            BlockWriter writer = new BlockWriter(channel, HEADER, new ArrayList<>());
+            StringBuilder text = new StringBuilder(BLOCK_SIZE + 256);
+            String newLine = System.lineSeparator();
+            for (Book b : books) {
+                text.append(b.toFileString()).append(newLine);
+                if (text.length() >= BLOCK_SIZE) {
+                    writer.add(text.toString().getBytes(Charset.defaultCharset()));
+                    text.setLength(0);
+                }
+            }
+            if (text.length() > 0) writer.add(text.toString().getBytes(Charset.defaultCharset()));
+            writer.finish();
+        }
+    }
+
+    /**
+     * Writes the catalog with the new line to a temporary file and moves it
+     * over the old one, so an interrupted append leaves the catalog as it
+     * was.  Every block but the last is copied as it is; the last one is
+     * recompressed with the line if it still has room.
+     */
+    @Override
+    public void append(File file, Book book) throws IOException {
+        byte[] line = (book.toFileString() + System.lineSeparator()).getBytes(Charset.defaultCharset());
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<Block> blocks = readIndex(channel);
+
+            byte[] text = line;
+            if (!blocks.isEmpty()) {
+                Block last = blocks.get(blocks.size() - 1);
+                if (last.length + line.length <= BLOCK_SIZE) {
+                    byte[] old = inflate(channel, last, blocks.size() - 1);
+                    text = Arrays.copyOf(old, old.length + line.length);
+                    System.arraycopy(line, 0, text, old.length, line.length);
+                    blocks.remove(blocks.size() - 1);
+                }
+            }
+
+            // The header and the kept blocks land at the same offsets in the new file
+            long position = HEADER;
+            if (!blocks.isEmpty()) {
+                Block last = blocks.get(blocks.size() - 1);
+                position = last.offset + last.compressedLength;
+            }
+            long copied = 0;
+            while (copied < position) {
+                copied += channel.transferTo(copied, position - copied, out);
+            }
+
+            BlockWriter writer = new BlockWriter(out, position, blocks);
+            writer.add(text);
+            writer.finish();
+            out.force(true);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Compresses blocks on the pool, a bounded number at a time, and writes
+     * them in order at the channel position, followed by the index and the
+     * trailer of every block listed so far.
+     */
+    private final class BlockWriter {
+        private final FileChannel channel;
+        private final List<Block> blocks;
+        private final Deque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+        private final Deque<byte[]> pendingText = new ArrayDeque<>();
+        private final int maxPending = pool.getParallelism() * 2;
+        private long position;
+
+        BlockWriter(FileChannel channel, long position, List<Block> blocks) {
+            this.channel = channel;
+            this.position = position;
+            this.blocks = blocks;
+        }
+
+        void add(byte[] text) throws IOException {
+            pending.add(pool.submit(new CompressTask(text)));
+            pendingText.add(text);
+            if (pending.size() > maxPending) writeNext();
+        }
+
+        void finish() throws IOException {
+            while (!pending.isEmpty()) writeNext();
+
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(blocks.size() * INDEX_ENTRY + TRAILER);
+            for (Block block : blocks) {
+                index.putInt(block.compressedLength).putInt(block.length).putInt(block.crc);
+            }
+            index.putInt(blocks.size()).putLong(indexOffset).put(MAGIC);
+            writeFully(channel, index.flip(), indexOffset);
+            channel.truncate(indexOffset + index.limit());
+        }
+
+        private void writeNext() throws IOException {
+            byte[] compressed = pending.remove().join();
+            byte[] text = pendingText.remove();
+            CRC32 crc = new CRC32();
+            crc.update(text);
+            writeFully(channel, ByteBuffer.wrap(compressed), position);
+            blocks.add(new Block(position, compressed.length, text.length, (int) crc.getValue()));
+            position += compressed.length;
+        }
+    }
+
+    /** Deflates one block's text into a raw DEFLATE stream. */
+    private static final class CompressTask extends RecursiveTask<byte[]> {
+        private final byte[] text;
+
+        CompressTask(byte[] text) {
+            this.text = text;
+        }
+
+        @Override
+        protected byte[] compute() {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(text);
+                deflater.finish();
+                byte[] out = new byte[text.length / 2 + 64];
+                int n = 0;
+                while (!deflater.finished()) {
+                    if (n == out.length) out = Arrays.copyOf(out, out.length * 2);
+                    n += deflater.deflate(out, n, out.length - n);
+                }
+                return Arrays.copyOf(out, n);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.put(MAGIC).put(VERSION);
+        return header.clear();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) throw corrupt("unexpected end of file");
+        }
+        return buf.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position)
+            throws IOException {
+        while (buf.hasRemaining()) position += channel.write(buf, position);
+    }
+
+    private static IOException corrupt(String detail) {
+        return new IOException("Corrupt compressed catalog: " + detail);
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/** Keeps the books as Book objects in an ArrayList (the default store). */
+public class HeapBookStore implements BookStore {
+    private final List<Book> books = new ArrayList<>();
+
+    @Override public int    size()            { return books.size(); }
+    @Override public void   add(Book b)       { books.add(b); }
+    @Override public Book   get(int id)       { return books.get(id); }
+    @Override public long   isbnAt(int id)    { return books.get(id).getIsbnValue(); }
+    @Override public String titleAt(int id)   { return books.get(id).getTitle(); }
+    @Override public List<Book> asList()      { return books; }
+
+    @Override
+    public void collectTitleMatches(String lowerKeyword, int[] ids, List<Book> results) {
+        if (ids == null) {
+            for (Book b : books) {
+                if (b.getTitle().toLowerCase().contains(lowerKeyword)) results.add(b);
+            }
+        } else {
+            for (int id : ids) {
+                Book b = books.get(id);
+                if (b.getTitle().toLowerCase().contains(lowerKeyword)) results.add(b);
+            }
+        }
+    }
+
+    @Override
+    public int compareTitles(int a, int b) {
+        return BookCatalog.TITLE_ORDER.compare(books.get(a), books.get(b));
+    }
+
+    @Override
+    public void sortByTitle() {
+        books.sort(BookCatalog.TITLE_ORDER);
+    }
+}
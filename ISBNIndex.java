@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index from a primitive ISBN to the position of the
+ * first book carrying it, plus the number of books that share it.
+ * Keys are stored in a plain long[] with linear probing, so neither
+ * inserts nor lookups box the ISBN.
+ */
+public class ISBNIndex {
+    private static final long EMPTY = -1L;          // ISBNs are never negative
+    private static final int  INITIAL_CAPACITY = 16; // must be a power of two
+
+    private long[] keys;
+    private int[]  firstIds;
+    private int[]  counts;
+    private int    size;
+    private int    mask;
+
+    public ISBNIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /** Records that the book at position {@code id} has the given ISBN. */
+    public void add(long isbn, int id) {
+        int slot = slotOf(isbn);
+        if (keys[slot] == isbn) {
+            counts[slot]++;
+            return;
+        }
+        keys[slot]     = isbn;
+        firstIds[slot] = id;
+        counts[slot]   = 1;
+        if (++size > (mask + 1) * 3 / 4) {
+            rehash();
+        }
+    }
+
+    /** Returns how many books share the ISBN (0 if there are none). */
+    public int count(long isbn) {
+        int slot = slotOf(isbn);
+        return (keys[slot] == isbn) ? counts[slot] : 0;
+    }
+
+    /** Returns the position of the first book with the ISBN, or -1 if there is none. */
+    public int firstId(long isbn) {
+        int slot = slotOf(isbn);
+        return (keys[slot] == isbn) ? firstIds[slot] : -1;
+    }
+
+    /** Removes every entry, keeping the current capacity. */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /** Number of distinct ISBNs in the index. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the slot holding {@code isbn}, or the empty slot where it would go. */
+    private int slotOf(long isbn) {
+        int slot = hash(isbn) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != isbn) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys   = keys;
+        int[]  oldFirsts = firstIds;
+        int[]  oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot]     = oldKeys[i];
+                firstIds[slot] = oldFirsts[i];
+                counts[slot]   = oldCounts[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys     = new long[capacity];
+        firstIds = new int[capacity];
+        counts   = new int[capacity];
+        mask     = capacity - 1;
+        size     = 0;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /** 64-bit finalizer from MurmurHash3, folded to an int. */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93e2b9b4ec5L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/** Growable list of primitive ints, used for index posting lists. */
+public class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(4);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) { return values[index]; }
+    public int size()         { return size; }
+
+    /** Returns the last value added, or -1 if the list is empty. */
+    public int last() {
+        return (size > 0) ? values[size - 1] : -1;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Intersects ascending posting lists, starting from the shortest one.
+     * Returns the ascending values present in every list.
+     */
+    public static int[] intersect(IntList[] lists) {
+        IntList[] sorted = lists.clone();
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] result = sorted[0].toArray();
+        int resultSize = result.length;
+        for (int l = 1; l < sorted.length && resultSize > 0; l++) {
+            IntList other = sorted[l];
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < resultSize; i++) {
+                int value = result[i];
+                while (j < other.size && other.values[j] < value) j++;
+                if (j == other.size) break;
+                if (other.values[j] == value) result[kept++] = value;
+            }
+            resultSize = kept;
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * Sorts the values with the comparator, keeping equal values in their
+     * original order (a merge sort, like List.sort), without boxing them.
+     */
+    public static void sort(int[] values, IntBinaryOperator comparator) {
+        int[] buffer = values.clone();
+        mergeSort(buffer, values, 0, values.length, comparator);
+    }
+
+    /** Sorts src[from, to) into dst[from, to); both start with the same contents. */
+    private static void mergeSort(int[] src, int[] dst, int from, int to,
+                                  IntBinaryOperator comparator) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int value = dst[i];
+                int j = i;
+                while (j > from && comparator.applyAsInt(dst[j - 1], value) > 0) {
+                    dst[j] = dst[j - 1];
+                    j--;
+                }
+                dst[j] = value;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(dst, src, from, mid, comparator);
+        mergeSort(dst, src, mid, to, comparator);
+        if (comparator.applyAsInt(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, from, dst, from, to - from);
+            return;
+        }
+        for (int i = from, l = from, r = mid; i < to; i++) {
+            if (r >= to || (l < mid && comparator.applyAsInt(src[l], src[r]) <= 0)) {
+                dst[i] = src[l++];
+            } else {
+                dst[i] = src[r++];
+            }
+        }
+    }
+}
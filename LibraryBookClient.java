@@ -0,0 +1,41 @@
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Thin client for LibraryBookServer: sends one operation over the server's
+ * Unix domain socket and prints the reply exactly as LibraryBookTracker
+ * would have printed it.
+ *
+ * Usage: java LibraryBookClient <socketPath> <operation>
+ */
+public class LibraryBookClient {
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Error: Usage: java LibraryBookClient <socketPath> <operation>");
+            System.exit(1);
+        }
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(Path.of(args[0])));
+
+            ByteBuffer request = ByteBuffer.wrap(args[1].getBytes(StandardCharsets.UTF_8));
+            while (request.hasRemaining()) channel.write(request);
+            channel.shutdownOutput();
+
+            byte[] out = LibraryBookServer.readBlock(channel);
+            byte[] err = LibraryBookServer.readBlock(channel);
+            System.err.write(err);
+            System.err.flush();
+            System.out.write(out);
+            System.out.flush();
+        } catch (IOException e) {
+            System.err.println("Server I/O Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
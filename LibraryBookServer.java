@@ -0,0 +1,181 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Resident daemon that loads the catalog once and then serves
+ * LibraryBookTracker operations over a Unix domain socket, so a request
+ * pays neither JVM startup nor the catalog load.
+ *
+ * Usage: java LibraryBookServer <catalogFile.txt> <socketPath>
+ *
+ * Protocol, one request per connection: the client sends the operation as
+ * UTF-8 and shuts down its output; the server replies with the request's
+ * standard output and standard error, each as a 4-byte length followed by
+ * the bytes, and closes the connection.  The reply contains exactly what a
+ * single LibraryBookTracker run would have printed, statistics included.
+ * Requests are served one at a time against the shared catalog; the
+ * operation "--shutdown" stops the server.
+ */
+public class LibraryBookServer {
+    /** Operation that makes the server stop after replying. */
+    static final String SHUTDOWN_OPERATION = "--shutdown";
+
+    /** Largest operation accepted from a client. */
+    private static final int MAX_REQUEST_SIZE = 1 << 20;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Error: Usage: java LibraryBookServer <catalogFile.txt> <socketPath>");
+            System.exit(1);
+        }
+
+        try {
+            File catalogFile = LibraryBookTracker.openCatalogFile(args[0]);
+
+            // What the load prints (warnings for invalid lines and the like) is
+            // part of every run's output, so it is kept and replayed into each reply
+            ByteArrayOutputStream loadOut = new ByteArrayOutputStream();
+            ByteArrayOutputStream loadErr = new ByteArrayOutputStream();
+            BookCatalog catalog;
+            try (PrintStream out = new PrintStream(loadOut, true);
+                 PrintStream err = new PrintStream(loadErr, true)) {
+                LibraryBookTracker.redirectOutput(out, err);
+                try {
+                    catalog = LibraryBookTracker.loadCatalog(catalogFile);
+                } finally {
+                    LibraryBookTracker.redirectOutput(null, null);
+                }
+            }
+            LoadOutput loadOutput = new LoadOutput(loadOut.toByteArray(), loadErr.toByteArray(),
+                LibraryBookTracker.getErrorCount());
+            System.out.writeBytes(loadOutput.out);
+            System.err.writeBytes(loadOutput.err);
+
+            Path socketPath = Path.of(args[1]);
+            Files.deleteIfExists(socketPath);
+            try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+                server.bind(UnixDomainSocketAddress.of(socketPath));
+                System.out.println("Serving " + catalog.size() + " books from " + catalogFile
+                    + " on " + socketPath);
+
+                boolean running = true;
+                while (running) {
+                    try (SocketChannel client = server.accept()) {
+                        running = serve(client, catalog, catalogFile, loadOutput);
+                    } catch (IOException e) {
+                        System.err.println("Client I/O Error: " + e.getMessage());
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(socketPath);
+            }
+        } catch (BookCatalogException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("File I/O Error: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("Thread interrupted: " + e.getMessage());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** What loading the catalog printed and counted, as a fresh run would have. */
+    private static final class LoadOutput {
+        final byte[] out;
+        final byte[] err;
+        final long errors;
+
+        LoadOutput(byte[] out, byte[] err, long errors) {
+            this.out = out;
+            this.err = err;
+            this.errors = errors;
+        }
+    }
+
+    /** Serves one connection; returns false if the server should stop. */
+    private static boolean serve(SocketChannel client, BookCatalog catalog, File catalogFile,
+                                 LoadOutput load) throws IOException {
+        String operation = new String(readRequest(client), StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        boolean running = true;
+        try (PrintStream out = new PrintStream(outBytes, true);
+             PrintStream err = new PrintStream(errBytes, true)) {
+            if (SHUTDOWN_OPERATION.equals(operation)) {
+                out.println("Server shutting down.");
+                running = false;
+            } else {
+                out.writeBytes(load.out);
+                err.writeBytes(load.err);
+                LibraryBookTracker.redirectOutput(out, err);
+                try {
+                    LibraryBookTracker.serveOperation(catalog, operation, catalogFile, load.errors);
+                } finally {
+                    LibraryBookTracker.redirectOutput(null, null);
+                }
+            }
+        }
+
+        writeBlock(client, outBytes.toByteArray());
+        writeBlock(client, errBytes.toByteArray());
+        return running;
+    }
+
+    /** Reads everything the client sends until it shuts down its output. */
+    private static byte[] readRequest(SocketChannel client) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        while (true) {
+            if (!buf.hasRemaining()) {
+                if (buf.capacity() >= MAX_REQUEST_SIZE) {
+                    // A request of exactly the limit is fine if the client is done
+                    if (client.read(ByteBuffer.allocate(1)) < 0) break;
+                    throw new IOException("Request larger than " + MAX_REQUEST_SIZE + " bytes");
+                }
+                ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2);
+                buf.flip();
+                bigger.put(buf);
+                buf = bigger;
+            }
+            if (client.read(buf) < 0) break;
+        }
+        buf.flip();
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    /** Writes a 4-byte length followed by the bytes. */
+    static void writeBlock(SocketChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4 + bytes.length);
+        buf.putInt(bytes.length).put(bytes).flip();
+        while (buf.hasRemaining()) channel.write(buf);
+    }
+
+    /** Reads a block written by {@link #writeBlock}. */
+    static byte[] readBlock(SocketChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length);
+        ByteBuffer body = ByteBuffer.allocate(length.flip().getInt());
+        readFully(channel, body);
+        return body.array();
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) throw new IOException("Connection closed by server");
+        }
+    }
+}
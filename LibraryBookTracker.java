@@ -1,92 +1,365 @@
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class LibraryBookTracker {
 
-    private static int validRecords  = 0;
-    private static int searchResults = 0;
-    private static int booksAdded    = 0;
-    private static int errorCount    = 0;
+    /**
+     * Run statistics.  LongAdder-backed, so parallel readers and the batch
+     * mode's concurrent operations can all count without contention; a
+     * snapshot can be exported with the "--metrics" operation or
+     * -Dlibrary.metrics.file.
+     */
+    static final MetricsRegistry METRICS = new MetricsRegistry();
+    private static final MetricsRegistry.Counter validRecords = METRICS.counter(
+        "library_valid_records_total", "Valid catalog records loaded.");
+    private static final MetricsRegistry.Counter searchResults = METRICS.counter(
+        "library_search_results_total", "Books returned by ISBN and keyword searches.");
+    private static final MetricsRegistry.Counter booksAdded = METRICS.counter(
+        "library_books_added_total", "Books added to the catalog.");
+    private static final MetricsRegistry.Counter errorCount = METRICS.counter(
+        "library_errors_total", "Errors encountered, including rejected catalog lines.");
 
     private static File errorLogFile = null;
 
+    /**
+     * Catalog reader, chosen with -Dlibrary.reader=buffered|mapped|parallel.
+     * "mapped" scans a memory-mapped copy of the file instead of decoding it
+     * line by line; "parallel" does the same on newline-aligned chunks spread
+     * over the common ForkJoinPool.  Both need an ASCII-compatible default
+     * charset and fall back to "buffered" otherwise.
+     */
+    private static final String READER_MODE = System.getProperty("library.reader", "buffered");
+
+    /**
+     * How adds reach the catalog file, chosen with -Dlibrary.add=rewrite|append|wal.
+     * "rewrite" sorts the catalog and rewrites the whole file on every add;
+     * "append" only writes the new line to the end of the file and leaves the
+     * title order to be restored later by the compaction operation; "wal"
+     * writes the line to the catalog's write-ahead log, which is folded back
+     * into the sorted catalog in the background once it grows past
+     * -Dlibrary.wal.threshold bytes (default 1 MiB).
+     */
+    private static final String ADD_MODE = System.getProperty("library.add", "rewrite");
+    private static final long WAL_THRESHOLD = Long.getLong("library.wal.threshold", 1L << 20);
+
+    /**
+     * How keyword searches find titles, chosen with
+     * -Dlibrary.keyword=scan|trigram|word.
+     * "scan" checks every title for the keyword as a substring; "trigram"
+     * builds a trigram index while the catalog loads and only checks the
+     * titles containing all of the keyword's trigrams, with exactly the same
+     * matches as "scan"; "word" builds an inverted index of title words and
+     * answers whole-word queries from it (titles must contain each query word
+     * as a whole word), scanning only for queries that are not plain words.
+     */
+    private static final String KEYWORD_MODE = System.getProperty("library.keyword", "scan");
+
+    /**
+     * Where the loaded books are kept, chosen with
+     * -Dlibrary.store=heap|columnar|offheap.  "heap" keeps a Book object per
+     * record; "columnar" keeps each field in a primitive array (titles packed
+     * into one byte[], authors as ids into an AuthorPool) so searches scan
+     * contiguous memory; "offheap" encodes the records into direct
+     * ByteBuffers, for catalogs too large for the heap.  The last two only
+     * materialize the books that are printed or written back.
+     */
+    private static final String STORE_MODE = System.getProperty("library.store", "heap");
+
+    /**
+     * With -Dlibrary.authorPool=true a heap catalog keeps one String per
+     * distinct author, shared by all of that author's books, and the
+     * statistics report how many authors there are and the heap this saves.
+     * The columnar store always pools its authors; the option only adds the
+     * report.
+     */
+    private static final boolean AUTHOR_POOL = Boolean.getBoolean("library.authorPool");
+
+    /** Authors of the catalog loaded last, reported in the statistics; null if not pooled. */
+    private static volatile AuthorPool loadedAuthors = null;
+
+    /**
+     * With -Dlibrary.sidecar=true the parse results are cached in a sidecar
+     * file next to the catalog ("books.txt.idx") and reused on later runs for
+     * as long as the catalog's size, mtime and checksum still match.
+     */
+    private static final boolean USE_SIDECAR = Boolean.getBoolean("library.sidecar");
+
+    /**
+     * Where this thread's standard output and error go.  Inherited by the
+     * threads it starts, so a daemon request can capture everything its
+     * operation prints; defaults to System.out / System.err.
+     */
+    private static final InheritableThreadLocal<PrintStream> OUT = new InheritableThreadLocal<>();
+    private static final InheritableThreadLocal<PrintStream> ERR = new InheritableThreadLocal<>();
+
+    /**
+     * With -Dlibrary.pipeline=true, Thread 2 starts together with Thread 1 and
+     * consumes the parsed books in batches through a bounded queue, so search
+     * results are printed while the catalog is still being read.
+     */
+    private static final boolean PIPELINE = Boolean.getBoolean("library.pipeline");
+    private static final int PIPELINE_QUEUE_CAPACITY = 64;
+    private static final int PIPELINE_BATCH_SIZE = 1024;
+
+    /** Background WAL compaction started by the last add, if any. */
+    private static volatile Thread compactionThread = null;
+
+    /** Operation that sorts the catalog file back into title order. */
+    static final String COMPACT_OPERATION = "--compact";
+
+    /**
+     * Operation that runs many operations against a single catalog load:
+     * "--batch [opsFile]" reads one operation per line from opsFile, or from
+     * standard input if it is omitted or "-".
+     */
+    static final String BATCH_OPERATION = "--batch";
+
+    /** Most read operations a batch runs concurrently before printing their output. */
+    private static final int BATCH_WINDOW = 256;
+
+    /**
+     * Operation that exports the current statistics: "--metrics [file]"
+     * writes a snapshot to the file (JSON if it ends in ".json", Prometheus
+     * text otherwise), to -Dlibrary.metrics.file if no file is given, or
+     * prints it in Prometheus format if neither is set.  Most useful in batch
+     * and daemon mode.
+     */
+    static final String METRICS_OPERATION = "--metrics";
+
+    /** With -Dlibrary.metrics.file=path a snapshot is also written after every run. */
+    private static final String METRICS_FILE = System.getProperty("library.metrics.file");
+
+    /**
+     * With -Dlibrary.isbn.checksum=true catalog lines and added books must
+     * also carry a correct ISBN-13 check digit.  Searches are not affected.
+     */
+    static final boolean ISBN_CHECKSUM = Boolean.getBoolean("library.isbn.checksum");
+
+    /** With -Dlibrary.timings=true the statistics include p50/p99/max per phase. */
+    private static final boolean PRINT_TIMINGS = Boolean.getBoolean("library.timings");
+
+    /**
+     * Timed phases of a run, each with a latency histogram in METRICS.  Like
+     * the counters' totals the histograms are never reset, so they accumulate
+     * over the operations of a batch and the requests served by a daemon.
+     */
+    enum Phase {
+        OPEN    ("File open",          "library_file_open_seconds"),
+        PARSE   ("Catalog parse",      "library_parse_seconds"),
+        INDEX   ("Index build",        "library_index_build_seconds"),
+        DISPATCH("Operation dispatch", "library_dispatch_seconds"),
+        SEARCH  ("Search",             "library_search_seconds"),
+        SORT    ("Sort",               "library_sort_seconds"),
+        REWRITE ("Catalog write",      "library_catalog_write_seconds"),
+        PRINT   ("Output printing",    "library_print_seconds");
+
+        final String label;
+        final MetricsRegistry.Histogram histogram;
+
+        Phase(String label, String metric) {
+            this.label = label;
+            this.histogram = METRICS.histogram(metric, label + " latency in seconds.");
+        }
+
+        /** Records the time since {@code start}, a System.nanoTime() reading. */
+        void recordSince(long start) {
+            histogram.recordSince(start);
+        }
+    }
+
     // -------------------------------------------------------------------------
-    // Thread 1: reads the catalog file and populates the shared books list
+    // Thread 1: reads the catalog file and populates the shared catalog
     // -------------------------------------------------------------------------
     static class FileReader implements Runnable {
         private final File catalogFile;
-        private final List<Book> books;
+        private final CatalogSink sink;
+        private final BookCatalog catalog;
 
-        FileReader(File catalogFile, List<Book> books) {
+        FileReader(File catalogFile, BookCatalog catalog) {
+            this(catalogFile, new CatalogLoader(catalog), catalog);
+        }
+
+        /** Reads into the sink, which fills the catalog; a failed read marks the catalog incomplete. */
+        FileReader(File catalogFile, CatalogSink sink, BookCatalog catalog) {
             this.catalogFile = catalogFile;
-            this.books = books;
+            this.sink = sink;
+            this.catalog = catalog;
         }
 
         @Override
         public void run() {
+            // Lines are only counted while a JFR recording wants the event
+            CatalogLoadEvent event = new CatalogLoadEvent();
+            CountingSink counter = event.isEnabled() ? new CountingSink(sink) : null;
+            event.begin();
+            boolean completed = false;
+            String reader = null;
             try {
-                readCatalog(catalogFile, books);
+                long start = System.nanoTime();
+                reader = readCatalog(catalogFile, (counter != null) ? counter : sink);
+                Phase.PARSE.recordSince(start);
+                completed = true;
             } catch (IOException e) {
-                errorCount++;
+                errorCount.increment();
                 logError("IO ERROR: \"" + e.getMessage() + "\"", e);
-                System.err.println("File I/O Error: " + e.getMessage());
+                err().println("File I/O Error: " + e.getMessage());
+                catalog.markIncomplete(e.getMessage());
+            } finally {
+                // Whatever stopped the read, the books loaded so far are not the whole file
+                if (!completed && catalog.isComplete()) catalog.markIncomplete("read did not finish");
+            }
+            event.end();
+            if (counter != null && event.shouldCommit()) {
+                event.file    = catalogFile.getPath();
+                event.reader  = reader;
+                event.bytes   = catalogFile.length();
+                event.valid   = counter.valid;
+                event.invalid = counter.invalid;
+                event.lines   = counter.valid + counter.invalid;
+                event.commit();
             }
         }
     }
 
     // -------------------------------------------------------------------------
-    // Thread 2: processes the operation (args[1]) against the shared books list
+    // Thread 2: processes the operation (args[1]) against the shared catalog
     // -------------------------------------------------------------------------
     static class OperationAnalyzer implements Runnable {
-        private final List<Book> books;
+        private final BookCatalog catalog;
         private final String operation;
         private final File catalogFile;
+        private final long created = System.nanoTime();
 
-        OperationAnalyzer(List<Book> books, String operation, File catalogFile) {
-            this.books = books;
+        OperationAnalyzer(BookCatalog catalog, String operation, File catalogFile) {
+            this.catalog = catalog;
             this.operation = operation;
             this.catalogFile = catalogFile;
         }
 
         @Override
         public void run() {
-            if (operation.matches("\\d{13}")) {
+            // Time taken to hand the operation to the thread that runs it
+            Phase.DISPATCH.recordSince(created);
+
+            if (operation.equals(COMPACT_OPERATION)) {
+                // Restore title order after append-only adds
+                try {
+                    performCompaction(catalog, catalogFile);
+                } catch (IOException e) {
+                    errorCount.increment();
+                    logError("IO ERROR: \"" + e.getMessage() + "\"", e);
+                    err().println("File I/O Error: " + e.getMessage());
+                }
+
+            } else if (isMetricsOperation(operation)) {
+                // Statistics snapshot
+                String file = operation.substring(METRICS_OPERATION.length()).trim();
+                if (!file.isEmpty())           exportMetrics(file);
+                else if (METRICS_FILE != null) exportMetrics(METRICS_FILE);
+                else                           out().print(METRICS.toPrometheus());
+
+            } else if (isISBN13(operation)) {
                 // ISBN search
                 try {
-                    performISBNSearch(books, operation);
+                    performISBNSearch(catalog, operation);
                 } catch (DuplicateISBNException e) {
-                    errorCount++;
+                    errorCount.increment();
                     logError("DUPLICATE ISBN: \"" + operation + "\"", e);
-                    System.err.println("Error: " + e.getClass().getSimpleName()
+                    err().println("Error: " + e.getClass().getSimpleName()
                         + ": " + e.getMessage());
                 }
 
             } else if (operation.split(":", -1).length == 4) {
                 // Add book
                 try {
-                    performAddBook(books, operation, catalogFile);
+                    performAddBook(catalog, operation, catalogFile);
                 } catch (BookCatalogException e) {
-                    errorCount++;
+                    errorCount.increment();
                     logError("INVALID INPUT: \"" + operation + "\"", e);
-                    System.err.println("Error: " + e.getClass().getSimpleName()
+                    err().println("Error: " + e.getClass().getSimpleName()
                         + ": " + e.getMessage());
                 } catch (IOException e) {
-                    errorCount++;
+                    errorCount.increment();
                     logError("IO ERROR: \"" + e.getMessage() + "\"", e);
-                    System.err.println("File I/O Error: " + e.getMessage());
+                    err().println("File I/O Error: " + e.getMessage());
                 }
 
             } else {
                 // Keyword search
-                performKeywordSearch(books, operation);
+                performKeywordSearch(catalog, operation);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Thread 2 (pipelined mode): processes the operation while Thread 1 is
+    // still reading, consuming the books in batches as they are parsed
+    // -------------------------------------------------------------------------
+    static class PipelinedAnalyzer implements Runnable {
+        private final BookPipeline pipeline;
+        private final BookCatalog catalog;
+        private final String operation;
+        private final File catalogFile;
+
+        PipelinedAnalyzer(BookPipeline pipeline, BookCatalog catalog, String operation,
+                          File catalogFile) {
+            this.pipeline = pipeline;
+            this.catalog = catalog;
+            this.operation = operation;
+            this.catalogFile = catalogFile;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (isISBN13(operation)) {
+                    // ISBN search: duplicates are only known once the stream ends
+                    try {
+                        streamISBNSearch(pipeline, operation);
+                    } catch (DuplicateISBNException e) {
+                        errorCount.increment();
+                        logError("DUPLICATE ISBN: \"" + operation + "\"", e);
+                        err().println("Error: " + e.getClass().getSimpleName()
+                            + ": " + e.getMessage());
+                    }
+
+                } else if (operation.equals(COMPACT_OPERATION) || isMetricsOperation(operation)
+                        || operation.split(":", -1).length == 4) {
+                    // Adds, compactions and snapshots need the complete catalog
+                    drain();
+                    new OperationAnalyzer(catalog, operation, catalogFile).run();
+
+                } else {
+                    // Keyword search: print matches as they arrive
+                    streamKeywordSearch(pipeline, operation);
+                }
+            } catch (InterruptedException e) {
+                errorCount.increment();
+                logError("THREAD INTERRUPTED: \"" + e.getMessage() + "\"", e);
+                err().println("Thread interrupted: " + e.getMessage());
+                Thread.currentThread().interrupt();
+            } finally {
+                // Never leave Thread 1 blocked on a full queue
+                try {
+                    drain();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void drain() throws InterruptedException {
+            while (pipeline.take() != null) {
+                // discard
             }
         }
     }
@@ -102,255 +375,980 @@ public class LibraryBookTracker {
                     "Insufficient arguments. Usage: java LibraryBookTracker <catalogFile.txt> <operation>");
             }
 
-            // Validate catalog file name
-            if (!args[0].endsWith(".txt")) {
-                throw new InvalidFileNameException(
-                    "Catalog file must end with '.txt': " + args[0]);
-            }
-
-            File catalogFile = new File(args[0]);
+            File catalogFile = openCatalogFile(args[0]);
 
-            // Create parent directories and/or the file if they do not exist
-            File parentDir = catalogFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs();
-            }
-            if (!catalogFile.exists()) {
-                catalogFile.createNewFile();
+            if (PIPELINE && !BATCH_OPERATION.equals(args[1])) {
+                runPipelined(catalogFile, args[1]);
+                return;
             }
 
-            // Resolve errors.log path (same directory as the catalog)
-            errorLogFile = (parentDir != null)
-                ? new File(parentDir, "errors.log")
-                : new File("errors.log");
+            // Shared catalog — both threads access this same instance
+            BookCatalog catalog = loadCatalog(catalogFile);
 
-            // Shared catalog list — both threads access this same instance
-            List<Book> books = new ArrayList<>();
-
-            // --- Thread 1: FileReader ---
-            // Reads the catalog file and populates the shared books list
-            Thread fileThread = new Thread(new FileReader(catalogFile, books));
-            fileThread.start();
-            fileThread.join(); // wait until Thread 1 finishes completely
+            if (BATCH_OPERATION.equals(args[1])) {
+                runBatch(catalog, (args.length > 2) ? args[2] : "-", catalogFile);
+            } else {
+                runOperation(catalog, args[1], catalogFile);
+            }
 
-            // --- Thread 2: OperationAnalyzer ---
-            // Starts only after Thread 1 has finished; processes args[1]
-            String operation = args[1];
-            Thread opThread = new Thread(new OperationAnalyzer(books, operation, catalogFile));
-            opThread.start();
-            opThread.join(); // wait until Thread 2 finishes completely
+            // Let a background WAL compaction finish before reporting
+            Thread compactor = compactionThread;
+            if (compactor != null) compactor.join();
 
         } catch (InsufficientArgumentsException e) {
-            errorCount++;
+            errorCount.increment();
             String provided = (args.length > 0) ? String.join(" ", args) : "(none)";
             logError("INSUFFICIENT ARGUMENTS: \"" + provided + "\"", e);
-            System.err.println("Error: " + e.getMessage());
+            err().println("Error: " + e.getMessage());
         } catch (InvalidFileNameException e) {
-            errorCount++;
+            errorCount.increment();
             logError("INVALID FILE NAME: \"" + args[0] + "\"", e);
-            System.err.println("Error: " + e.getMessage());
+            err().println("Error: " + e.getMessage());
         } catch (IOException e) {
-            errorCount++;
+            errorCount.increment();
             logError("IO ERROR: \"" + e.getMessage() + "\"", e);
-            System.err.println("File I/O Error: " + e.getMessage());
+            err().println("File I/O Error: " + e.getMessage());
         } catch (InterruptedException e) {
-            errorCount++;
+            errorCount.increment();
             logError("THREAD INTERRUPTED: \"" + e.getMessage() + "\"", e);
-            System.err.println("Thread interrupted: " + e.getMessage());
+            err().println("Thread interrupted: " + e.getMessage());
             Thread.currentThread().interrupt();
         } catch (Exception e) {
-            errorCount++;
+            errorCount.increment();
             logError("UNEXPECTED ERROR: \"" + e.getMessage() + "\"", e);
-            System.err.println("Unexpected error: " + e.getMessage());
+            err().println("Unexpected error: " + e.getMessage());
         } finally {
+            // Export first, so a failed export is in errors.log and the error count
+            exportMetrics(METRICS_FILE);
             // Always print statistics and closing message
-            System.out.println();
-            System.out.println("--- Statistics ---");
-            System.out.println("Valid records processed : " + validRecords);
-            System.out.println("Search results          : " + searchResults);
-            System.out.println("Books added             : " + booksAdded);
-            System.out.println("Errors encountered      : " + errorCount);
-            System.out.println("Thank you for using the Library Book Tracker.");
+            printStatistics();
         }
     }
 
-    // -------------------------------------------------------------------------
-    // Helper methods (called by both Runnables via the enclosing class)
-    // -------------------------------------------------------------------------
+    /**
+     * Validates the catalog file name, creates the file (and its parent
+     * directories) if it does not exist yet, and points errors.log at the
+     * catalog's directory.
+     */
+    static File openCatalogFile(String path) throws InvalidFileNameException, IOException {
+        long start = System.nanoTime();
+
+        // Validate catalog file name
+        if (!path.endsWith(".txt")) {
+            throw new InvalidFileNameException(
+                "Catalog file must end with '.txt': " + path);
+        }
+
+        File catalogFile = new File(path);
+
+        // Create parent directories and/or the file if they do not exist
+        File parentDir = catalogFile.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        if (!catalogFile.exists()) {
+            catalogFile.createNewFile();
+        }
+
+        // Resolve errors.log path (same directory as the catalog)
+        errorLogFile = (parentDir != null)
+            ? new File(parentDir, "errors.log")
+            : new File("errors.log");
+        Phase.OPEN.recordSince(start);
+        return catalogFile;
+    }
+
+    /** Reads the catalog on Thread 1 (FileReader) and waits for it to finish. */
+    static BookCatalog loadCatalog(File catalogFile) throws InterruptedException {
+        BookCatalog catalog = createCatalog();
+
+        // --- Thread 1: FileReader ---
+        // Reads the catalog file and populates the shared catalog
+        Thread fileThread = new Thread(new FileReader(catalogFile, catalog));
+        fileThread.start();
+        fileThread.join(); // wait until Thread 1 finishes completely
+        indexCatalog(catalog);
+        return catalog;
+    }
+
+    /** Builds the indexes of a freshly loaded catalog in one pass. */
+    private static void indexCatalog(BookCatalog catalog) {
+        long start = System.nanoTime();
+        catalog.rebuildIndexes();
+        Phase.INDEX.recordSince(start);
+    }
 
     /**
-     * Reads every line from the catalog file, attempts to parse and validate
-     * each one, skips invalid lines (logging them), and populates the provided
-     * books list.  Called from Thread 1 (FileReader).
+     * Runs Thread 1 and Thread 2 at the same time, connected by a bounded
+     * queue of book batches, so searches can print results before the whole
+     * catalog has been read.  Waits for both threads (and a background WAL
+     * compaction) to finish.
+     */
+    private static void runPipelined(File catalogFile, String operation)
+            throws InterruptedException {
+        BookCatalog catalog = createCatalog();
+        BookPipeline pipeline = new BookPipeline(new CatalogLoader(catalog),
+            PIPELINE_QUEUE_CAPACITY, PIPELINE_BATCH_SIZE);
+
+        // --- Thread 1: FileReader, feeding the pipeline ---
+        Thread fileThread = new Thread(() -> {
+            try {
+                new FileReader(catalogFile, pipeline, catalog).run();
+            } finally {
+                indexCatalog(catalog);
+                pipeline.finish();
+            }
+        });
+
+        // --- Thread 2: PipelinedAnalyzer, consuming batches as they arrive ---
+        Thread opThread = new Thread(new PipelinedAnalyzer(pipeline, catalog, operation, catalogFile));
+
+        fileThread.start();
+        opThread.start();
+        fileThread.join();
+        opThread.join();
+
+        Thread compactor = compactionThread;
+        if (compactor != null) compactor.join();
+    }
+
+    /**
+     * Processes one operation on Thread 2 (OperationAnalyzer) against a loaded
+     * catalog and waits for it to finish.
+     */
+    static void runOperation(BookCatalog catalog, String operation, File catalogFile)
+            throws InterruptedException {
+        // --- Thread 2: OperationAnalyzer ---
+        // Starts only after Thread 1 has finished
+        Thread opThread = new Thread(new OperationAnalyzer(catalog, operation, catalogFile));
+        opThread.start();
+        opThread.join(); // wait until Thread 2 finishes completely
+    }
+
+    /**
+     * Runs every operation listed in the source (a file, or "-" for standard
+     * input), one per line, against the loaded catalog.  Each operation's
+     * output is printed after a "> operation" line, in input order, and the
+     * statistics are aggregated over the whole batch.
      *
-     * Note: java.io.FileReader is referenced with its fully-qualified name here
-     * to avoid ambiguity with the inner class also named FileReader.
-     */
-    private static void readCatalog(File catalogFile, List<Book> books) throws IOException {
-        try (BufferedReader reader =
-                new BufferedReader(new java.io.FileReader(catalogFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
+     * Consecutive read operations (ISBN and keyword searches) run in parallel
+     * on the common ForkJoinPool, each capturing its output in its own buffer;
+     * adds and compactions run alone, in order, so later reads see them.
+     */
+    private static void runBatch(BookCatalog catalog, String source, File catalogFile)
+            throws IOException {
+        try (BufferedReader reader = "-".equals(source)
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : new BufferedReader(new java.io.FileReader(source))) {
+            List<String> reads = new ArrayList<>();
+            String operation;
+            while ((operation = reader.readLine()) != null) {
+                if (operation.trim().isEmpty()) continue;
+                if (isReadOperation(operation)) {
+                    reads.add(operation);
+                    if (reads.size() == BATCH_WINDOW) {
+                        runReadsInParallel(catalog, reads, catalogFile);
+                        reads.clear();
+                    }
+                } else {
+                    runReadsInParallel(catalog, reads, catalogFile);
+                    reads.clear();
+                    out().println("> " + operation);
+                    new OperationAnalyzer(catalog, operation, catalogFile).run();
+                }
+            }
+            runReadsInParallel(catalog, reads, catalogFile);
+        }
+    }
+
+    /** True for operations that only read the catalog (ISBN and keyword searches). */
+    private static boolean isReadOperation(String operation) {
+        if (operation.equals(COMPACT_OPERATION) || isMetricsOperation(operation)) return false;
+        if (isISBN13(operation)) return true;
+        return operation.split(":", -1).length != 4;
+    }
+
+    /** Runs read operations concurrently and prints their output in the given order. */
+    private static void runReadsInParallel(BookCatalog catalog, List<String> operations,
+                                           File catalogFile) {
+        List<ForkJoinTask<byte[][]>> tasks = new ArrayList<>(operations.size());
+        for (String operation : operations) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+                ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+                redirectOutput(new PrintStream(outBytes, true), new PrintStream(errBytes, true));
                 try {
-                    books.add(parseAndValidate(line));
-                    validRecords++;
-                } catch (BookCatalogException e) {
-                    errorCount++;
-                    logError("INVALID LINE: \"" + line + "\"", e);
-                    System.err.println("Warning – skipping invalid line: "
-                        + e.getClass().getSimpleName() + ": " + e.getMessage());
+                    new OperationAnalyzer(catalog, operation, catalogFile).run();
+                } finally {
+                    redirectOutput(null, null);
                 }
+                return new byte[][] { outBytes.toByteArray(), errBytes.toByteArray() };
+            }));
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            byte[][] output = tasks.get(i).join();
+            out().println("> " + operations.get(i));
+            out().flush();
+            err().writeBytes(output[1]);
+            err().flush();
+            out().writeBytes(output[0]);
+        }
+    }
+
+    /**
+     * Serves one daemon request: starts the statistics block's counts from
+     * what a fresh run would have counted while loading, runs the operation
+     * and prints the statistics block, all to this thread's output streams.
+     * The exported metrics keep the totals since the daemon started.
+     */
+    static void serveOperation(BookCatalog catalog, String operation, File catalogFile,
+                               long loadErrors) {
+        for (MetricsRegistry.Counter counter : METRICS.getCounters()) counter.startRun(0);
+        validRecords.startRun(catalog.size());
+        errorCount.startRun(loadErrors);
+        try {
+            runOperation(catalog, operation, catalogFile);
+        } catch (InterruptedException e) {
+            errorCount.increment();
+            logError("THREAD INTERRUPTED: \"" + e.getMessage() + "\"", e);
+            err().println("Thread interrupted: " + e.getMessage());
+            Thread.currentThread().interrupt();
+        } finally {
+            exportMetrics(METRICS_FILE);
+            printStatistics();
+        }
+    }
+
+    /** Number of errors counted so far in this run. */
+    static long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    /** True for "--metrics" with or without a file name. */
+    private static boolean isMetricsOperation(String operation) {
+        return operation.equals(METRICS_OPERATION)
+            || operation.startsWith(METRICS_OPERATION + " ");
+    }
+
+    /** Writes a metrics snapshot to the file, if one is given. */
+    private static void exportMetrics(String file) {
+        if (file == null) return;
+        try {
+            METRICS.writeSnapshot(new File(file).toPath());
+        } catch (IOException e) {
+            errorCount.increment();
+            logError("IO ERROR: \"" + e.getMessage() + "\"", e);
+            err().println("File I/O Error: " + e.getMessage());
+        }
+    }
+
+    /** Sends this thread's output, and that of the threads it starts, to the given streams. */
+    static void redirectOutput(PrintStream out, PrintStream err) {
+        OUT.set(out);
+        ERR.set(err);
+    }
+
+    static PrintStream out() {
+        PrintStream out = OUT.get();
+        return (out != null) ? out : System.out;
+    }
+
+    static PrintStream err() {
+        PrintStream err = ERR.get();
+        return (err != null) ? err : System.err;
+    }
+
+    private static void printStatistics() {
+        // Every error of this run is in errors.log before the run reports
+        try {
+            AsyncErrorLog.flushAll();
+        } catch (IOException e) {
+            err().println("Could not write to error log: " + e.getMessage());
+        }
+
+        PrintStream out = out();
+        out.println();
+        out.println("--- Statistics ---");
+        out.println("Valid records processed : " + validRecords.runSum());
+        out.println("Search results          : " + searchResults.runSum());
+        out.println("Books added             : " + booksAdded.runSum());
+        out.println("Errors encountered      : " + errorCount.runSum());
+        AuthorPool authors = loadedAuthors;
+        if (authors != null) {
+            out.printf("Distinct authors        : %d (~%.1f MB of heap saved)\n",
+                authors.size(), authors.getSavedBytes() / (1024.0 * 1024.0));
+        }
+        if (PRINT_TIMINGS) printTimings(out);
+        out.println("Thank you for using the Library Book Tracker.");
+    }
+
+    /** Prints p50/p99/max for every phase that has run, accumulated over the process. */
+    private static void printTimings(PrintStream out) {
+        out.println("--- Timings (p50 / p99 / max) ---");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram h = phase.histogram;
+            if (h.getCount() == 0) continue;
+            out.printf("%-24s: %10s / %10s / %10s  (%d)\n", phase.label,
+                formatNanos(h.getPercentile(50)), formatNanos(h.getPercentile(99)),
+                formatNanos(h.getMax()), h.getCount());
+        }
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000)         return nanos + " ns";
+        if (nanos < 1_000_000)     return String.format("%.1f us", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format("%.1f ms", nanos / 1e6);
+        return String.format("%.2f s", nanos / 1e9);
+    }
+
+    // -------------------------------------------------------------------------
+    // Helper methods (called by both Runnables via the enclosing class).
+    // The parse, validation, search and add helpers are package-private so
+    // the JMH benchmarks in benchmarks/ can call them directly.
+    // -------------------------------------------------------------------------
+
+    /**
+     * Reads every record from the catalog file, skipping invalid ones, and
+     * feeds the results to the sink (which populates the catalog and logs
+     * the invalid lines).  Text catalogs are parsed and validated line by
+     * line; binary catalogs hold records that were validated when written.
+     * Called from Thread 1 (FileReader).  Returns the path the records
+     * actually came from: "binary", "compressed", "sidecar" or the text
+     * reader that parsed the file.
+     */
+    private static String readCatalog(File catalogFile, CatalogSink sink) throws IOException {
+        CatalogFormat format = CatalogFormat.of(catalogFile);
+        String reader;
+        if (format != CatalogFormat.TEXT) {
+            format.read(catalogFile, sink);   // the sidecar and byte readers are for text
+            reader = (format == CatalogFormat.BINARY) ? "binary" : "compressed";
+        } else if (USE_SIDECAR) {
+            reader = readCatalogWithSidecar(catalogFile, sink);
+        } else {
+            reader = readCatalogFile(catalogFile, sink);
+        }
+
+        // Replay adds logged since the catalog file was last written
+        WriteAheadLog.forCatalog(catalogFile).replay(sink);
+        return reader;
+    }
+
+    /**
+     * Replays the catalog's sidecar if it is up to date; otherwise parses the
+     * catalog and rewrites the sidecar from the results, unless the catalog
+     * changed while it was being parsed.  The sidecar is only a cache, so
+     * failing to write it is a warning, not a failed load.  Returns
+     * "sidecar", or the reader that parsed the catalog.
+     */
+    private static String readCatalogWithSidecar(File catalogFile, CatalogSink sink) throws IOException {
+        CatalogSidecar sidecar = new CatalogSidecar(catalogFile, Charset.defaultCharset(), ISBN_CHECKSUM);
+        CatalogSidecar.Stamp stamp = sidecar.stampCatalog();
+        if (sidecar.load(stamp, sink)) return "sidecar";
+
+        RecordingSink records = new RecordingSink();
+        String reader = readCatalogFile(catalogFile, records);
+        records.replayTo(sink);
+        if (sidecar.unchangedSince(stamp)) {
+            try {
+                sidecar.write(stamp, records);
+            } catch (IOException e) {
+                err().println("Warning: could not write catalog sidecar "
+                    + sidecar.getSidecarFile() + ": " + e.getMessage());
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Feeds every line of the catalog file to the sink using the configured
+     * reader; returns the name of the reader used, which is "buffered" when
+     * the byte-level readers do not support the charset.
+     */
+    private static String readCatalogFile(File catalogFile, CatalogSink sink) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        if (MappedCatalogReader.supports(charset)) {
+            if ("mapped".equals(READER_MODE)) {
+                new MappedCatalogReader(charset).read(catalogFile, sink);
+                return "mapped";
+            }
+            if ("parallel".equals(READER_MODE)) {
+                new ParallelCatalogReader(charset, ForkJoinPool.commonPool()).read(catalogFile, sink);
+                return "parallel";
             }
         }
+
+        CatalogFormat.TEXT.read(catalogFile, sink);
+        return "buffered";
+    }
+
+    /**
+     * Adds each valid book to the catalog and logs each rejected line;
+     * shared by every catalog reader.  Books whose author did not come from
+     * the catalog's author pool are given the pooled instance.
+     */
+    private static class CatalogLoader implements CatalogSink {
+        private final BookCatalog catalog;
+        private final AuthorPool authors;
+
+        CatalogLoader(BookCatalog catalog) {
+            this.catalog = catalog;
+            this.authors = catalog.getAuthorPool();
+        }
+
+        @Override
+        public void accept(Book book) {
+            if (authors != null) {
+                String author = authors.intern(book.getAuthor());
+                if (author != book.getAuthor()) {
+                    book = new Book(book.getTitle(), author, book.getIsbnValue(), book.getCopies());
+                }
+            }
+            catalog.append(book);   // indexed in one pass once loading is done
+            validRecords.increment();
+        }
+
+        @Override
+        public void reject(String line, BookCatalogException e) {
+            errorCount.increment();
+            logError("INVALID LINE: \"" + line + "\"", e);
+            err().println("Warning – skipping invalid line: "
+                + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+
+        @Override
+        public AuthorPool authorPool() {
+            return authors;
+        }
+    }
+
+    /** Counts the lines passing through to another sink, for CatalogLoadEvent. */
+    private static class CountingSink implements CatalogSink {
+        private final CatalogSink delegate;
+        long valid;
+        long invalid;
+
+        CountingSink(CatalogSink delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void accept(Book book) {
+            valid++;
+            delegate.accept(book);
+        }
+
+        @Override
+        public void reject(String line, BookCatalogException e) {
+            invalid++;
+            delegate.reject(line, e);
+        }
+
+        @Override
+        public AuthorPool authorPool() {
+            return delegate.authorPool();
+        }
     }
 
     /**
      * Parses a raw "Title:Author:ISBN:Copies" string, validates every field,
      * and returns a Book instance.  Throws a BookCatalogException subclass on
-     * the first validation failure found.
+     * the first validation failure found.  Package-private so the byte-level
+     * catalog readers can fall back to it for lines they do not handle.
+     *
+     * Walks the line once with a cursor: the fields are trimmed in place (same
+     * rule as String.trim()) and only the title and author are copied out, so
+     * a valid line allocates nothing but the Book and its two strings.  The
+     * exceptions and messages are those of the original split/trim/parseInt
+     * version.
      */
-    private static Book parseAndValidate(String line) throws BookCatalogException {
-        String[] parts = line.split(":", -1);
+    static Book parseAndValidate(String line) throws BookCatalogException {
+        return parseAndValidate(line, null);
+    }
 
-        if (parts.length != 4) {
+    /**
+     * Like {@link #parseAndValidate(String)}, but takes the author from the
+     * pool when it is given, so a known author is not copied out of the line.
+     */
+    static Book parseAndValidate(String line, AuthorPool authors) throws BookCatalogException {
+        int end = line.length();
+        int c1 = line.indexOf(':');
+        int c2 = (c1 < 0) ? -1 : line.indexOf(':', c1 + 1);
+        int c3 = (c2 < 0) ? -1 : line.indexOf(':', c2 + 1);
+        if (c3 < 0 || line.indexOf(':', c3 + 1) >= 0) {
             throw new MalformedBookEntryException(
                 "Entry must have exactly 4 fields separated by ':' (found "
-                + parts.length + ")");
+                + countFields(line) + ")");
         }
 
-        String title     = parts[0].trim();
-        String author    = parts[1].trim();
-        String isbn      = parts[2].trim();
-        String copiesStr = parts[3].trim();
+        int titleStart  = skipBlank(line, 0, c1);
+        int titleEnd    = trimEnd(line, titleStart, c1);
+        int authorStart = skipBlank(line, c1 + 1, c2);
+        int authorEnd   = trimEnd(line, authorStart, c2);
+        int isbnStart   = skipBlank(line, c2 + 1, c3);
+        int isbnEnd     = trimEnd(line, isbnStart, c3);
+        int copiesStart = skipBlank(line, c3 + 1, end);
+        int copiesEnd   = trimEnd(line, copiesStart, end);
 
-        if (title.isEmpty()) {
+        if (titleStart == titleEnd) {
             throw new MalformedBookEntryException("Title is empty");
         }
-        if (author.isEmpty()) {
+        if (authorStart == authorEnd) {
             throw new MalformedBookEntryException("Author is empty");
         }
 
-        validateISBN(isbn);
+        long isbn = parseISBN(line, isbnStart, isbnEnd);
 
-        int copies;
-        try {
-            copies = Integer.parseInt(copiesStr);
-        } catch (NumberFormatException e) {
-            throw new MalformedBookEntryException(
-                "Copies is not a valid integer: \"" + copiesStr + "\"");
-        }
+        int copies = parseCopies(line, copiesStart, copiesEnd);
         if (copies <= 0) {
             throw new MalformedBookEntryException(
                 "Copies must be a positive integer greater than zero (got " + copies + ")");
         }
 
-        return new Book(title, author, isbn, copies);
+        String author = (authors != null)
+            ? authors.intern(line, authorStart, authorEnd)
+            : line.substring(authorStart, authorEnd);
+        return new Book(line.substring(titleStart, titleEnd), author, isbn, copies);
     }
 
-    /** Validates that an ISBN string consists of exactly 13 numeric digits. */
-    private static void validateISBN(String isbn) throws InvalidISBNException {
-        if (!isbn.matches("\\d{13}")) {
-            if (!isbn.matches("\\d*")) {
-                throw new InvalidISBNException(
-                    "ISBN must contain only numeric characters: \"" + isbn + "\"");
-            } else {
+    /** Number of ':'-separated fields, as line.split(":", -1).length would count them. */
+    private static int countFields(String line) {
+        int fields = 1;
+        for (int i = line.indexOf(':'); i >= 0; i = line.indexOf(':', i + 1)) fields++;
+        return fields;
+    }
+
+    /** First position in [start, end) whose char is above ' ', or end. */
+    private static int skipBlank(String s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        return start;
+    }
+
+    /** End of [start, end) once trailing chars up to ' ' are dropped. */
+    private static int trimEnd(String s, int start, int end) {
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        return end;
+    }
+
+    /**
+     * Parses s[start, end) as a decimal int exactly like Integer.parseInt
+     * (optional sign, any Unicode decimal digits, overflow rejected), but
+     * without cutting out a substring first.
+     */
+    private static int parseCopies(String s, int start, int end)
+            throws MalformedBookEntryException {
+        int i = start;
+        boolean negative = false;
+        int limit = -Integer.MAX_VALUE;
+        if (i < end) {
+            char first = s.charAt(i);
+            if (first < '0') {                     // possible leading "+" or "-"
+                if (first == '-') {
+                    negative = true;
+                    limit = Integer.MIN_VALUE;
+                } else if (first != '+') {
+                    throw notAnInteger(s, start, end);
+                }
+                if (end - start == 1) throw notAnInteger(s, start, end);
+                i++;
+            }
+            // Accumulate negatively, as Integer.parseInt does, so MIN_VALUE fits
+            int multmin = limit / 10;
+            int result = 0;
+            while (i < end) {
+                int digit = Character.digit(s.charAt(i++), 10);
+                if (digit < 0 || result < multmin) throw notAnInteger(s, start, end);
+                result *= 10;
+                if (result < limit + digit) throw notAnInteger(s, start, end);
+                result -= digit;
+            }
+            return negative ? result : -result;
+        }
+        throw notAnInteger(s, start, end);
+    }
+
+    private static MalformedBookEntryException notAnInteger(String s, int start, int end) {
+        return new MalformedBookEntryException(
+            "Copies is not a valid integer: \"" + s.substring(start, end) + "\"");
+    }
+
+    /**
+     * Validates that an ISBN string consists of exactly 13 numeric digits,
+     * and with -Dlibrary.isbn.checksum=true that its check digit is right.
+     * One pass over the characters, no regex.
+     */
+    static void validateISBN(String isbn) throws InvalidISBNException {
+        parseISBN(isbn, 0, isbn.length());
+    }
+
+    /** Validates s[start, end) as validateISBN does and returns its value. */
+    private static long parseISBN(String s, int start, int end) throws InvalidISBNException {
+        long value = 0;
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
                 throw new InvalidISBNException(
-                    "ISBN must be exactly 13 digits (got " + isbn.length()
-                    + "): \"" + isbn + "\"");
+                    "ISBN must contain only numeric characters: \"" + s.substring(start, end) + "\"");
             }
+            value = value * 10 + digit;
+            sum += (((i - start) & 1) == 0) ? digit : 3 * digit;   // ISBN-13 weights 1, 3, 1, 3, ...
         }
+        int length = end - start;
+        if (length != Book.ISBN_LENGTH) {
+            throw new InvalidISBNException(
+                "ISBN must be exactly 13 digits (got " + length + "): \""
+                + s.substring(start, end) + "\"");
+        }
+        if (ISBN_CHECKSUM && sum % 10 != 0) {
+            int last = s.charAt(end - 1) - '0';
+            throw new InvalidISBNException(
+                "ISBN check digit must be " + (last - sum % 10 + 10) % 10
+                + " (got " + last + "): \"" + s.substring(start, end) + "\"");
+        }
+        return value;
+    }
+
+    /** True if the string is exactly 13 ASCII digits (the shape of an ISBN search). */
+    static boolean isISBN13(String s) {
+        if (s.length() != Book.ISBN_LENGTH) return false;
+        for (int i = 0; i < Book.ISBN_LENGTH; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
     }
 
     /**
-     * Searches for books whose ISBN matches exactly;
+     * Looks up books whose ISBN matches exactly using the catalog's ISBN index;
      * throws DuplicateISBNException if more than one match exists.
      */
-    private static void performISBNSearch(List<Book> books, String isbn)
+    static void performISBNSearch(BookCatalog catalog, String isbn)
             throws DuplicateISBNException {
-        List<Book> results = new ArrayList<>();
-        for (Book b : books) {
-            if (b.getIsbn().equals(isbn)) results.add(b);
+        CatalogQueryEvent event = new CatalogQueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long key = Long.parseLong(isbn);
+        int matches = catalog.countByIsbn(key);
+        Book found = (matches == 1) ? catalog.findByIsbn(key) : null;
+        Phase.SEARCH.recordSince(start);
+
+        if (matches > 1) {
+            commitQuery(event, "isbn", isbn, matches);
+            throw new DuplicateISBNException(
+                "Multiple books (" + matches + ") share ISBN: " + isbn);
+        }
+
+        start = System.nanoTime();
+        printHeader();
+        if (found == null) {
+            out().println("No book found with ISBN: " + isbn);
+        } else {
+            printBook(found);
+            searchResults.increment();
+        }
+        Phase.PRINT.recordSince(start);
+        commitQuery(event, "isbn", isbn, matches);
+    }
+
+    /** Fills in and commits a query event, if a JFR recording wants it. */
+    private static void commitQuery(CatalogQueryEvent event, String type, String query,
+                                    int results) {
+        if (event.shouldCommit()) {
+            event.queryType = type;
+            event.query     = query;
+            event.results   = results;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns an empty catalog for the configured keyword, store and author
+     * pool modes, and makes its author pool the one the statistics report.
+     * The columnar store's own dictionary serves as the pool, so readers
+     * resolve authors straight into it; the off-heap store keeps no Strings
+     * and gets no pool.
+     */
+    private static BookCatalog createCatalog() {
+        BookStore store = createBookStore();
+        AuthorPool authors = null;
+        if (store instanceof ColumnarBookStore) {
+            authors = ((ColumnarBookStore) store).getAuthors();
+        } else if (AUTHOR_POOL && store instanceof HeapBookStore) {
+            authors = new AuthorPool();
+        }
+        loadedAuthors = AUTHOR_POOL ? authors : null;
+        return new BookCatalog(createTitleIndex(), store, authors);
+    }
+
+    /** Returns an empty book store for the configured store mode. */
+    private static BookStore createBookStore() {
+        switch (STORE_MODE) {
+            case "columnar": return new ColumnarBookStore();
+            case "offheap":  return new OffHeapBookStore();
+            default:         return new HeapBookStore();
         }
+    }
 
-        if (results.size() > 1) {
+    /** Returns the title index for the configured keyword mode, or null to scan. */
+    private static TitleIndex createTitleIndex() {
+        switch (KEYWORD_MODE) {
+            case "trigram": return new TrigramIndex();
+            case "word":    return new TitleTokenIndex();
+            default:        return null;
+        }
+    }
+
+    /**
+     * Pipelined ISBN search: counts the matching books as the batches arrive
+     * and reports only once the stream has ended, so duplicates are detected
+     * exactly as by performISBNSearch.
+     */
+    private static void streamISBNSearch(BookPipeline pipeline, String isbn)
+            throws DuplicateISBNException, InterruptedException {
+        CatalogQueryEvent event = new CatalogQueryEvent();
+        event.begin();
+        long key = Long.parseLong(isbn);
+        Book first = null;
+        int matches = 0;
+        List<Book> batch;
+        while ((batch = pipeline.take()) != null) {
+            for (Book b : batch) {
+                if (b.getIsbnValue() == key) {
+                    if (first == null) first = b;
+                    matches++;
+                }
+            }
+        }
+
+        if (matches > 1) {
+            commitQuery(event, "isbn", isbn, matches);
             throw new DuplicateISBNException(
-                "Multiple books (" + results.size() + ") share ISBN: " + isbn);
+                "Multiple books (" + matches + ") share ISBN: " + isbn);
         }
 
         printHeader();
-        if (results.isEmpty()) {
-            System.out.println("No book found with ISBN: " + isbn);
+        if (first == null) {
+            out().println("No book found with ISBN: " + isbn);
         } else {
-            printBook(results.get(0));
-            searchResults = 1;
+            printBook(first);
+            searchResults.increment();
         }
+        commitQuery(event, "isbn", isbn, matches);
     }
 
     /**
-     * Searches for books whose titles contain the given keyword
-     * (case-insensitive) and prints all matches.
+     * Pipelined keyword search: prints the header straight away and every
+     * matching book as soon as its batch arrives.  Matches the same books as
+     * performKeywordSearch in every keyword mode.
      */
-    private static void performKeywordSearch(List<Book> books, String keyword) {
+    private static void streamKeywordSearch(BookPipeline pipeline, String keyword)
+            throws InterruptedException {
+        CatalogQueryEvent event = new CatalogQueryEvent();
+        event.begin();
         String lower = keyword.toLowerCase();
-        List<Book> results = new ArrayList<>();
-        for (Book b : books) {
-            if (b.getTitle().toLowerCase().contains(lower)) results.add(b);
+        boolean wholeWords = "word".equals(KEYWORD_MODE);
+        int matches = 0;
+
+        printHeader();
+        List<Book> batch;
+        while ((batch = pipeline.take()) != null) {
+            for (Book b : batch) {
+                String title = b.getTitle().toLowerCase();
+                if (wholeWords ? TitleTokenIndex.matches(title, lower) : title.contains(lower)) {
+                    printBook(b);
+                    matches++;
+                }
+            }
         }
+        if (matches == 0) {
+            out().println("No books found matching keyword: \"" + keyword + "\"");
+        }
+        searchResults.add(matches);
+        commitQuery(event, "keyword", keyword, matches);
+    }
 
+    /**
+     * Searches for books whose titles contain the given keyword
+     * (case-insensitive) and prints all matches.
+     */
+    static void performKeywordSearch(BookCatalog catalog, String keyword) {
+        CatalogQueryEvent event = new CatalogQueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Book> results = catalog.findByKeyword(keyword);
+        Phase.SEARCH.recordSince(start);
+
+        start = System.nanoTime();
         printHeader();
         if (results.isEmpty()) {
-            System.out.println("No books found matching keyword: \"" + keyword + "\"");
+            out().println("No books found matching keyword: \"" + keyword + "\"");
         } else {
             for (Book b : results) printBook(b);
         }
-        searchResults = results.size();
+        searchResults.add(results.size());
+        Phase.PRINT.recordSince(start);
+        commitQuery(event, "keyword", keyword, results.size());
     }
 
-    private static void performAddBook(List<Book> books, String entry, File catalogFile)
+    static void performAddBook(BookCatalog catalog, String entry, File catalogFile)
             throws BookCatalogException, IOException {
+        CatalogAddEvent event = new CatalogAddEvent();
+        event.begin();
         Book newBook = parseAndValidate(entry);   // may throw BookCatalogException
+        checkWritable(catalog, catalogFile);
 
-        books.add(newBook);
-        books.sort(Comparator.comparing(b -> b.getTitle().toLowerCase()));
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(catalogFile))) {
-            for (Book b : books) {
-                writer.write(b.toFileString());
-                writer.newLine();
-            }
+        catalog.add(newBook);
+        String mode = ADD_MODE;
+        long bytesWritten;
+        long sortTime = 0;
+        if ("wal".equals(mode)) {
+            long start = System.nanoTime();
+            WriteAheadLog wal = WriteAheadLog.forCatalog(catalogFile);
+            long before = wal.size();
+            wal.append(newBook);
+            bytesWritten = wal.size() - before;
+            Phase.REWRITE.recordSince(start);
+            if (wal.size() >= WAL_THRESHOLD) startBackgroundCompaction(wal);
+        } else if ("append".equals(mode)) {
+            // Logged adds must reach the file before its length changes
+            long start = System.nanoTime();
+            WriteAheadLog wal = WriteAheadLog.forCatalog(catalogFile);
+            if (wal.hasPendingEntries()) wal.compact();
+            long before = catalogFile.length();
+            CatalogFormat.of(catalogFile).append(catalogFile, newBook);
+            bytesWritten = catalogFile.length() - before;
+            Phase.REWRITE.recordSince(start);
+        } else {
+            mode = "rewrite";
+            sortTime = sortCatalog(catalog);
+            rewriteCatalog(catalog, catalogFile);
+            bytesWritten = catalogFile.length();
         }
 
-        booksAdded = 1;
+        booksAdded.increment();
+        long start = System.nanoTime();
         printHeader();
         printBook(newBook);
+        Phase.PRINT.recordSince(start);
+
+        if (event.shouldCommit()) {
+            event.isbn         = newBook.getIsbn();
+            event.mode         = mode;
+            event.bytesWritten = bytesWritten;
+            event.sortTime     = sortTime;
+            event.commit();
+        }
+    }
+
+    /** Sorts the catalog by title, re-indexing it; returns the time taken in nanoseconds. */
+    private static long sortCatalog(BookCatalog catalog) {
+        long start = System.nanoTime();
+        catalog.sortByTitle();
+        long elapsed = System.nanoTime() - start;
+        Phase.SORT.histogram.record(elapsed);
+        return elapsed;
+    }
+
+    /**
+     * Sorts the catalog by title and rewrites the file, unless it is already
+     * in title order (nothing has been appended since the last compaction).
+     * A write-ahead log with pending adds is always folded into the file.
+     */
+    private static void performCompaction(BookCatalog catalog, File catalogFile)
+            throws IOException {
+        checkWritable(catalog, catalogFile);
+        WriteAheadLog wal = WriteAheadLog.forCatalog(catalogFile);
+        if (wal.hasPendingEntries()) {
+            long start = System.nanoTime();
+            int written = wal.compact();
+            Phase.REWRITE.recordSince(start);
+            sortCatalog(catalog);
+            out().println("Catalog compacted: " + written + " books written in title order");
+            return;
+        }
+        if (catalog.isSortedByTitle()) {
+            out().println("Catalog already in title order: " + catalog.size() + " books");
+            return;
+        }
+        sortCatalog(catalog);
+        rewriteCatalog(catalog, catalogFile);
+        out().println("Catalog compacted: " + catalog.size() + " books written in title order");
+    }
+
+    /**
+     * Folds the write-ahead log into the catalog on a separate thread so the
+     * add that crossed the threshold is not held up by the rewrite.
+     */
+    private static void startBackgroundCompaction(WriteAheadLog wal) {
+        Thread compactor = new Thread(() -> {
+            // May outlive the request or operation that started it, whose
+            // captured streams nobody reads any more
+            redirectOutput(System.out, System.err);
+            try {
+                long start = System.nanoTime();
+                wal.compact();
+                Phase.REWRITE.recordSince(start);
+            } catch (IOException e) {
+                errorCount.increment();
+                logError("IO ERROR: \"" + e.getMessage() + "\"", e);
+                err().println("File I/O Error: " + e.getMessage());
+            }
+        }, "catalog-compactor");
+        compactionThread = compactor;
+        compactor.start();
+    }
+
+    /**
+     * Refuses to change a catalog file whose load stopped early: writing the
+     * partial catalog back (or adding to the file) would lose the books that
+     * were never read.
+     */
+    private static void checkWritable(BookCatalog catalog, File catalogFile) throws IOException {
+        if (!catalog.isComplete()) {
+            throw new IOException("Catalog " + catalogFile + " did not load completely ("
+                + catalog.getLoadFailure() + "); not writing to it");
+        }
+    }
+
+    /**
+     * Truncates the catalog file and writes every book in the current list
+     * order, in the format the file is already in, then retires the
+     * write-ahead log whose entries the catalog already holds.
+     */
+    private static void rewriteCatalog(BookCatalog catalog, File catalogFile) throws IOException {
+        checkWritable(catalog, catalogFile);
+        long start = System.nanoTime();
+        CatalogFormat.of(catalogFile).write(catalogFile, catalog.getBooks());
+        // The logged adds were replayed into the catalog and are in the file now
+        WriteAheadLog.forCatalog(catalogFile).discard();
+        Phase.REWRITE.recordSince(start);
     }
 
     private static void printHeader() {
-        System.out.printf("%-30s %-20s %-15s %5s\n", "Title", "Author", "ISBN", "Copies");
-        System.out.println("-".repeat(73));
+        out().printf("%-30s %-20s %-15s %5s\n", "Title", "Author", "ISBN", "Copies");
+        out().println("-".repeat(73));
     }
 
     private static void printBook(Book b) {
-        System.out.printf("%-30s %-20s %-15s %5d\n",
+        out().printf("%-30s %-20s %-15s %5d\n",
             b.getTitle(), b.getAuthor(), b.getIsbn(), b.getCopies());
     }
 
+    /**
+     * Queues an entry for errors.log; the file is written in the background
+     * and flushed before the statistics are printed.
+     */
     private static void logError(String context, Exception e) {
         File target = (errorLogFile != null) ? errorLogFile : new File("errors.log");
+        AsyncErrorLog.forFile(target).log(context, e);
 
-        String timestamp = LocalDateTime.now()
-            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
-
-        String entry = String.format("[%s] %s - %s: %s%n",
-            timestamp, context, e.getClass().getSimpleName(), e.getMessage());
-
-        try (FileWriter fw = new FileWriter(target, true);
-             BufferedWriter bw = new BufferedWriter(fw)) {
-            bw.write(entry);
-        } catch (IOException ioEx) {
-            System.err.println("Could not write to error log: " + ioEx.getMessage());
+        CatalogErrorEvent event = new CatalogErrorEvent();
+        if (event.shouldCommit()) {
+            event.context   = context;
+            event.errorType = e.getClass().getSimpleName();
+            event.message   = e.getMessage();
+            event.commit();
         }
     }
 }
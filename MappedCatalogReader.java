@@ -0,0 +1,183 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a catalog by memory-mapping the file and scanning its bytes for the
+ * ':' and line delimiters directly, instead of decoding every byte to UTF-16
+ * and building one String per line.  Strings are only created for the title
+ * and author of lines that pass validation.
+ *
+ * Lines the byte scanner cannot fully vouch for (any validation failure, a
+ * signed or very long copies value, ...) are decoded and handed to
+ * LibraryBookTracker.parseAndValidate, so accepted books and exception
+ * messages are exactly those of the buffered reader.
+ */
+public class MappedCatalogReader {
+    /** Largest region mapped at once; lines never straddle two regions. */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    private final Charset charset;
+    private byte[] scratch = new byte[256];
+
+    public MappedCatalogReader(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Returns true if the charset encodes ':', CR, LF and ASCII whitespace as
+     * single bytes that never occur inside multi-byte sequences.
+     */
+    public static boolean supports(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+            || charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Maps the whole file window by window and feeds every line to the sink. */
+    public void read(File catalogFile, CatalogSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(catalogFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(WINDOW_SIZE, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = scan(buf, 0, length, last, sink);
+                if (consumed == 0 && !last) {
+                    throw new IOException("Catalog line longer than " + WINDOW_SIZE
+                        + " bytes at offset " + position);
+                }
+                position += consumed;
+            }
+        }
+    }
+
+    /**
+     * Scans the lines in buf[from, to).  A trailing line with no terminator is
+     * only processed when {@code last} is true; otherwise it is left for the
+     * caller.  Returns the number of bytes consumed from {@code from}.
+     */
+    public int scan(ByteBuffer buf, int from, int to, boolean last, CatalogSink sink) {
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            byte c = buf.get(i);
+            if (c == '\n' || c == '\r') {
+                parseLine(buf, lineStart, i, sink);
+                lineStart = i + 1;
+            }
+        }
+        if (last && lineStart < to) {
+            parseLine(buf, lineStart, to, sink);
+            lineStart = to;
+        }
+        return lineStart - from;
+    }
+
+    /** Parses one line, buf[start, end) without its terminator. */
+    private void parseLine(ByteBuffer buf, int start, int end, CatalogSink sink) {
+        // Same trimming rule as String.trim(): drop everything <= ' '
+        while (start < end && (buf.get(start) & 0xff) <= ' ') start++;
+        while (end > start && (buf.get(end - 1) & 0xff) <= ' ') end--;
+        if (start == end) return;
+
+        int c1 = indexOf(buf, start, end, (byte) ':');
+        int c2 = (c1 < 0) ? -1 : indexOf(buf, c1 + 1, end, (byte) ':');
+        int c3 = (c2 < 0) ? -1 : indexOf(buf, c2 + 1, end, (byte) ':');
+        if (c3 < 0 || indexOf(buf, c3 + 1, end, (byte) ':') >= 0) {
+            fallback(buf, start, end, sink);
+            return;
+        }
+
+        int titleStart = skipBlank(buf, start, c1);
+        int titleEnd   = trimEnd(buf, titleStart, c1);
+        int authStart  = skipBlank(buf, c1 + 1, c2);
+        int authEnd    = trimEnd(buf, authStart, c2);
+        long isbn      = parseISBN(buf, skipBlank(buf, c2 + 1, c3), trimEnd(buf, c2 + 1, c3));
+        int copies     = parseCopies(buf, skipBlank(buf, c3 + 1, end), end);
+        if (titleStart == titleEnd || authStart == authEnd || isbn < 0 || copies <= 0) {
+            fallback(buf, start, end, sink);
+            return;
+        }
+
+        sink.accept(new Book(decode(buf, titleStart, titleEnd),
+                             decode(buf, authStart, authEnd), isbn, copies));
+    }
+
+    /**
+     * Decodes the whole line and lets the String parser accept it or produce
+     * the exact exception the buffered reader would have reported.
+     */
+    private void fallback(ByteBuffer buf, int start, int end, CatalogSink sink) {
+        String line = decode(buf, start, end).trim();
+        try {
+            sink.accept(LibraryBookTracker.parseAndValidate(line));
+        } catch (BookCatalogException e) {
+            sink.reject(line, e);
+        }
+    }
+
+    /**
+     * Returns the 13-digit ISBN in buf[start, end), or -1 if it is not one
+     * (or, when check digits are verified, if its check digit is wrong).
+     */
+    private static long parseISBN(ByteBuffer buf, int start, int end) {
+        if (end - start != Book.ISBN_LENGTH) return -1;
+        long value = 0;
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+            sum += (((i - start) & 1) == 0) ? d : 3 * d;
+        }
+        if (LibraryBookTracker.ISBN_CHECKSUM && sum % 10 != 0) return -1;
+        return value;
+    }
+
+    /**
+     * Returns the plain (unsigned, at most 9 digit) decimal in buf[start, end),
+     * or -1 for anything else; such values are left to Integer.parseInt.
+     */
+    private static int parseCopies(ByteBuffer buf, int start, int end) {
+        if (start == end || end - start > 9) return -1;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private String decode(ByteBuffer buf, int start, int end) {
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buf.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, charset);
+    }
+
+    private static int indexOf(ByteBuffer buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    private static int skipBlank(ByteBuffer buf, int from, int to) {
+        while (from < to && (buf.get(from) & 0xff) <= ' ') from++;
+        return from;
+    }
+
+    private static int trimEnd(ByteBuffer buf, int from, int to) {
+        while (to > from && (buf.get(to - 1) & 0xff) <= ' ') to--;
+        return to;
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named counters and latency histograms that may be updated from any number
+ * of threads at once (parallel readers, batch operations, daemon requests),
+ * plus snapshots of them in JSON or Prometheus text exposition format.
+ * Metrics are registered up front and kept in registration order.
+ */
+public class MetricsRegistry {
+
+    /**
+     * A monotonically increasing count backed by a LongAdder.  The total is
+     * what gets exported and is never reset; {@link #startRun} begins a
+     * per-run view of it, so a daemon can report each request's counts
+     * without making the exported counter go backwards.
+     */
+    public static final class Counter {
+        private final String name;
+        private final String help;
+        private final LongAdder adder = new LongAdder();
+        private volatile long runStart;   // total when the current run began, less its initial count
+
+        private Counter(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public void increment()   { adder.increment(); }
+        public void add(long n)   { adder.add(n); }
+        public long sum()         { return adder.sum(); }
+
+        /**
+         * Starts a new run that counts from {@code initial}, without changing
+         * the total; not atomic with concurrent updates.
+         */
+        public void startRun(long initial) { runStart = adder.sum() - initial; }
+
+        /** Count since the last {@link #startRun}, or the total if there was none. */
+        public long runSum()      { return adder.sum() - runStart; }
+
+        public String getName()   { return name; }
+        public String getHelp()   { return help; }
+    }
+
+    /** A latency histogram with its name and help text; exported as a summary in seconds. */
+    public static final class Histogram extends LatencyHistogram {
+        private final String name;
+        private final String help;
+
+        private Histogram(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public String getName()   { return name; }
+        public String getHelp()   { return help; }
+    }
+
+    private final List<Counter> counters = new ArrayList<>();
+    private final List<Histogram> histograms = new ArrayList<>();
+
+    /**
+     * Registers a counter.  Names follow the Prometheus conventions
+     * ([a-zA-Z_:][a-zA-Z0-9_:]*, "_total" suffix for counters).
+     */
+    public synchronized Counter counter(String name, String help) {
+        checkName(name);
+        Counter counter = new Counter(name, help);
+        counters.add(counter);
+        return counter;
+    }
+
+    /** Registers a latency histogram, recording nanoseconds (suffix the name with "_seconds"). */
+    public synchronized Histogram histogram(String name, String help) {
+        checkName(name);
+        Histogram histogram = new Histogram(name, help);
+        histograms.add(histogram);
+        return histogram;
+    }
+
+    /** The registered counters, in registration order. */
+    public synchronized List<Counter> getCounters() {
+        return new ArrayList<>(counters);
+    }
+
+    /** The registered histograms, in registration order. */
+    public synchronized List<Histogram> getHistograms() {
+        return new ArrayList<>(histograms);
+    }
+
+    private void checkName(String name) {
+        if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+            throw new IllegalArgumentException("Invalid metric name: \"" + name + "\"");
+        }
+        for (Counter c : counters) {
+            if (c.name.equals(name)) {
+                throw new IllegalArgumentException("Metric already registered: \"" + name + "\"");
+            }
+        }
+        for (Histogram h : histograms) {
+            if (h.name.equals(name)) {
+                throw new IllegalArgumentException("Metric already registered: \"" + name + "\"");
+            }
+        }
+    }
+
+    /**
+     * Current values as a JSON object: {"timestamp_ms":..., "counters":{"name":value, ...},
+     * "histograms":{"name":{"count":..., "p50_ns":..., "p99_ns":..., "max_ns":...}, ...}}.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"timestamp_ms\":").append(System.currentTimeMillis()).append(",\"counters\":{");
+        List<Counter> snapshot = getCounters();
+        for (int i = 0; i < snapshot.size(); i++) {
+            Counter c = snapshot.get(i);
+            if (i > 0) sb.append(',');
+            sb.append('"').append(c.name).append("\":").append(c.sum());
+        }
+        sb.append("},\"histograms\":{");
+        List<Histogram> histogramSnapshot = getHistograms();
+        for (int i = 0; i < histogramSnapshot.size(); i++) {
+            Histogram h = histogramSnapshot.get(i);
+            if (i > 0) sb.append(',');
+            sb.append('"').append(h.name).append("\":{\"count\":").append(h.getCount())
+              .append(",\"p50_ns\":").append(h.getPercentile(50))
+              .append(",\"p99_ns\":").append(h.getPercentile(99))
+              .append(",\"max_ns\":").append(h.getMax()).append('}');
+        }
+        return sb.append("}}\n").toString();
+    }
+
+    /** Current values in the Prometheus text exposition format (version 0.0.4). */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        for (Counter c : getCounters()) {
+            sb.append("# HELP ").append(c.name).append(' ')
+              .append(c.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            sb.append("# TYPE ").append(c.name).append(" counter\n");
+            sb.append(c.name).append(' ').append(c.sum()).append('\n');
+        }
+        for (Histogram h : getHistograms()) {
+            sb.append("# HELP ").append(h.name).append(' ')
+              .append(h.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            sb.append("# TYPE ").append(h.name).append(" summary\n");
+            sb.append(h.name).append("{quantile=\"0.5\"} ").append(seconds(h.getPercentile(50))).append('\n');
+            sb.append(h.name).append("{quantile=\"0.99\"} ").append(seconds(h.getPercentile(99))).append('\n');
+            sb.append(h.name).append("_sum ").append(seconds(h.getSum())).append('\n');
+            sb.append(h.name).append("_count ").append(h.getCount()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    /**
+     * Writes a snapshot to the file: JSON if its name ends in ".json",
+     * Prometheus text otherwise.  The file is replaced atomically, so a
+     * scraper never sees a half-written snapshot.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        String text = file.getFileName().toString().endsWith(".json") ? toJson() : toPrometheus();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, text.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,183 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Keeps the books outside the Java heap, encoded one after another in an
+ * arena of direct ByteBuffers, with a primitive offsets table giving each
+ * position's record.  The GC sees a handful of buffers and one long[]
+ * instead of a Book and three Strings per record, so tens of millions of
+ * records stay practical.  Searches read the arena directly; a Book is
+ * only materialized when one is printed or written back to the file.
+ *
+ * Record layout: ISBN (long), copies (int), title length (int), author
+ * length (int), flags (byte), title UTF-8 bytes, author UTF-8 bytes.
+ * Direct memory is limited by -XX:MaxDirectMemorySize (by default the
+ * maximum heap size).
+ */
+public class OffHeapBookStore implements BookStore {
+    private static final int ISBN          = 0;
+    private static final int COPIES        = 8;
+    private static final int TITLE_LENGTH  = 12;
+    private static final int AUTHOR_LENGTH = 16;
+    private static final int FLAGS         = 20;
+    private static final int HEADER        = 21;
+
+    /** Flag set when the title is pure ASCII. */
+    private static final byte ASCII_TITLE = 1;
+
+    private static final int FIRST_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE   = 64 << 20;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;                 // last chunk; position() is the next free byte
+
+    /** Per position: chunk number in the high 32 bits, offset in that chunk in the low 32. */
+    private long[] offsets = new long[1024];
+    private int size;
+
+    private final List<Book> view = new BookView();
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(Book b) {
+        byte[] title  = b.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] author = b.getAuthor().getBytes(StandardCharsets.UTF_8);
+        int length = HEADER + title.length + author.length;
+        if (current == null || current.remaining() < length) {
+            int chunkSize = (current == null) ? FIRST_CHUNK_SIZE
+                                              : Math.min(current.capacity() * 2, MAX_CHUNK_SIZE);
+            current = ByteBuffer.allocateDirect(Math.max(chunkSize, length));
+            chunks.add(current);
+        }
+
+        int position = current.position();
+        current.putLong(b.getIsbnValue())
+               .putInt(b.getCopies())
+               .putInt(title.length)
+               .putInt(author.length)
+               .put(AsciiText.isAscii(b.getTitle()) ? ASCII_TITLE : 0)
+               .put(title)
+               .put(author);
+
+        if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+        offsets[size++] = ((long) (chunks.size() - 1) << 32) | position;
+    }
+
+    @Override
+    public Book get(int id) {
+        ByteBuffer chunk = chunkOf(id);
+        int position = positionOf(id);
+        int titleLength  = chunk.getInt(position + TITLE_LENGTH);
+        int authorLength = chunk.getInt(position + AUTHOR_LENGTH);
+        int titleStart   = position + HEADER;
+        return new Book(decode(chunk, titleStart, titleLength),
+                        decode(chunk, titleStart + titleLength, authorLength),
+                        chunk.getLong(position + ISBN),
+                        chunk.getInt(position + COPIES));
+    }
+
+    @Override
+    public long isbnAt(int id) {
+        return chunkOf(id).getLong(positionOf(id) + ISBN);
+    }
+
+    @Override
+    public String titleAt(int id) {
+        ByteBuffer chunk = chunkOf(id);
+        int position = positionOf(id);
+        return decode(chunk, position + HEADER, chunk.getInt(position + TITLE_LENGTH));
+    }
+
+    @Override
+    public void collectTitleMatches(String lowerKeyword, int[] ids, List<Book> results) {
+        byte[] needle = (AsciiText.ASCII_LOWERCASE && AsciiText.isAscii(lowerKeyword))
+            ? AsciiText.utf8(lowerKeyword) : null;
+        if (ids == null) {
+            for (int id = 0; id < size; id++) {
+                if (titleContains(id, lowerKeyword, needle)) results.add(get(id));
+            }
+        } else {
+            for (int id : ids) {
+                if (titleContains(id, lowerKeyword, needle)) results.add(get(id));
+            }
+        }
+    }
+
+    private boolean titleContains(int id, String lowerKeyword, byte[] needle) {
+        ByteBuffer chunk = chunkOf(id);
+        int position = positionOf(id);
+        if (needle != null && chunk.get(position + FLAGS) == ASCII_TITLE) {
+            int start = position + HEADER;
+            return AsciiText.containsIgnoreCase(chunk, start,
+                start + chunk.getInt(position + TITLE_LENGTH), needle);
+        }
+        return titleAt(id).toLowerCase().contains(lowerKeyword);
+    }
+
+    @Override
+    public int compareTitles(int a, int b) {
+        ByteBuffer chunkA = chunkOf(a);
+        ByteBuffer chunkB = chunkOf(b);
+        int positionA = positionOf(a);
+        int positionB = positionOf(b);
+        if (AsciiText.ASCII_LOWERCASE
+                && chunkA.get(positionA + FLAGS) == ASCII_TITLE
+                && chunkB.get(positionB + FLAGS) == ASCII_TITLE) {
+            int startA = positionA + HEADER;
+            int startB = positionB + HEADER;
+            return AsciiText.compareIgnoreCase(
+                chunkA, startA, startA + chunkA.getInt(positionA + TITLE_LENGTH),
+                chunkB, startB, startB + chunkB.getInt(positionB + TITLE_LENGTH));
+        }
+        return titleAt(a).toLowerCase().compareTo(titleAt(b).toLowerCase());
+    }
+
+    /** Sorts by permuting the offsets table; the records themselves stay where they are. */
+    @Override
+    public void sortByTitle() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        IntList.sort(order, this::compareTitles);
+
+        long[] sorted = new long[offsets.length];
+        for (int i = 0; i < size; i++) sorted[i] = offsets[order[i]];
+        offsets = sorted;
+    }
+
+    @Override
+    public List<Book> asList() {
+        return view;
+    }
+
+    private ByteBuffer chunkOf(int id) {
+        return chunks.get((int) (offsets[id] >>> 32));
+    }
+
+    private int positionOf(int id) {
+        return (int) offsets[id];
+    }
+
+    private static String decode(ByteBuffer chunk, int start, int length) {
+        byte[] bytes = new byte[length];
+        chunk.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Materializes each book as it is read. */
+    private final class BookView extends AbstractList<Book> implements RandomAccess {
+        @Override public Book get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            return OffHeapBookStore.this.get(index);
+        }
+        @Override public int size() { return size; }
+    }
+}
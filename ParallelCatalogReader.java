@@ -0,0 +1,114 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reads a catalog by splitting the memory-mapped file into newline-aligned
+ * chunks and parsing the chunks concurrently on a ForkJoinPool.
+ *
+ * Each chunk is parsed into its own private buffer of results; the buffers
+ * are then replayed into the caller's sink one chunk at a time, in file
+ * order, on the calling thread.  The sink therefore sees exactly the same
+ * sequence of accepted books and rejected lines as with a sequential reader,
+ * so list order, errors.log order and the statistics counters are unchanged.
+ */
+public class ParallelCatalogReader {
+    /** Largest region mapped at once; lines never straddle two regions. */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    /** Chunks smaller than this are not worth a task of their own. */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    private final Charset charset;
+    private final ForkJoinPool pool;
+
+    public ParallelCatalogReader(Charset charset, ForkJoinPool pool) {
+        this.charset = charset;
+        this.pool = pool;
+    }
+
+    /** Parses the whole file in parallel and feeds the results to the sink in file order. */
+    public void read(File catalogFile, CatalogSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(catalogFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(WINDOW_SIZE, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                int end = last ? length : lastLineEnd(buf, length);
+                if (end == 0) {
+                    throw new IOException("Catalog line longer than " + WINDOW_SIZE
+                        + " bytes at offset " + position);
+                }
+                parseWindow(buf, end, sink);
+                position += end;
+            }
+        }
+    }
+
+    /** Splits buf[0, end) into chunks, parses them concurrently and replays them in order. */
+    private void parseWindow(ByteBuffer buf, int end, CatalogSink sink) {
+        int chunkCount = Math.max(1, Math.min(pool.getParallelism() * 4, end / MIN_CHUNK_SIZE));
+        List<ForkJoinTask<RecordingSink>> tasks = new ArrayList<>(chunkCount);
+
+        int from = 0;
+        for (int i = 1; i <= chunkCount && from < end; i++) {
+            int to = (i == chunkCount) ? end : nextLineStart(buf, (int) ((long) end * i / chunkCount), end);
+            tasks.add(pool.submit(new ChunkTask(buf, from, to)));
+            from = to;
+        }
+
+        for (ForkJoinTask<RecordingSink> task : tasks) {
+            task.join().replayTo(sink);
+        }
+    }
+
+    /** Returns the offset just past the last line terminator in buf[0, length), or 0. */
+    private static int lastLineEnd(ByteBuffer buf, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            byte c = buf.get(i);
+            if (c == '\n' || c == '\r') return i + 1;
+        }
+        return 0;
+    }
+
+    /** Returns the offset just past the first line terminator at or after {@code from}. */
+    private static int nextLineStart(ByteBuffer buf, int from, int end) {
+        for (int i = from; i < end; i++) {
+            byte c = buf.get(i);
+            if (c == '\n' || c == '\r') return i + 1;
+        }
+        return end;
+    }
+
+    /** Parses one chunk with its own scanner into a private result buffer. */
+    private class ChunkTask extends RecursiveTask<RecordingSink> {
+        private final ByteBuffer buf;
+        private final int from;
+        private final int to;
+
+        ChunkTask(ByteBuffer buf, int from, int to) {
+            this.buf = buf;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RecordingSink compute() {
+            RecordingSink result = new RecordingSink();
+            new MappedCatalogReader(charset).scan(buf, from, to, true, result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sink that keeps the books and rejected lines it receives, in line order,
+ * so they can be replayed into another sink later.  Rejections are rare, so
+ * they are kept apart from the books together with the number of books
+ * that preceded each one.
+ */
+public class RecordingSink implements CatalogSink {
+    private final List<Book> books = new ArrayList<>();
+    private final List<Rejection> rejections = new ArrayList<>();
+
+    @Override
+    public void accept(Book book) {
+        books.add(book);
+    }
+
+    @Override
+    public void reject(String line, BookCatalogException e) {
+        rejections.add(new Rejection(books.size(), line, e));
+    }
+
+    public List<Book>      getBooks()      { return books;      }
+    public List<Rejection> getRejections() { return rejections; }
+
+    /** Feeds everything recorded to the sink, in the order it was received. */
+    public void replayTo(CatalogSink sink) {
+        int next = 0;
+        for (Rejection r : rejections) {
+            for (; next < r.booksBefore; next++) sink.accept(books.get(next));
+            sink.reject(r.line, r.error);
+        }
+        for (; next < books.size(); next++) sink.accept(books.get(next));
+    }
+
+    /** A rejected line, the error it raised and its position among the books. */
+    public static class Rejection {
+        final int booksBefore;
+        final String line;
+        final BookCatalogException error;
+
+        Rejection(int booksBefore, String line, BookCatalogException error) {
+            this.booksBefore = booksBefore;
+            this.line = line;
+            this.error = error;
+        }
+    }
+}
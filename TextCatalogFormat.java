@@ -0,0 +1,66 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * The original catalog format: one "Title:Author:ISBN:Copies" line per book
+ * in the platform charset.  Lines are trimmed, blank lines skipped, and
+ * every line is validated as it is read.
+ */
+public class TextCatalogFormat implements CatalogFormat {
+
+    /**
+     * Reads the file line by line.  The faster byte-level readers in
+     * LibraryBookTracker produce the same results where they apply.
+     */
+    @Override
+    public void read(File file, CatalogSink sink) throws IOException {
+        AuthorPool authors = sink.authorPool();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                try {
+                    sink.accept(LibraryBookTracker.parseAndValidate(line, authors));
+                } catch (BookCatalogException e) {
+                    sink.reject(line, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(File file, List<Book> books) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (Book b : books) {
+                writer.write(b.toFileString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /** Appends a line, first terminating the last line if the file does not end with a newline. */
+    @Override
+    public void append(File file, Book book) throws IOException {
+        boolean needsNewLine = false;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() > 0) {
+                raf.seek(raf.length() - 1);
+                int last = raf.read();
+                needsNewLine = last != '\n' && last != '\r';
+            }
+        }
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true))) {
+            if (needsNewLine) writer.newLine();
+            writer.write(book.toFileString());
+            writer.newLine();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Index over lowercased book titles used to narrow down keyword searches.
+ * Books are identified by their position in the catalog list.
+ */
+public interface TitleIndex {
+    /** Indexes the lowercased title of the book at position {@code id}. */
+    void add(int id, String lowerTitle);
+
+    /** Removes every entry. */
+    void clear();
+
+    /**
+     * Returns the ascending positions of the books that may match the
+     * lowercased keyword, or null if the index cannot answer it and the
+     * caller must scan every title.  Candidates are still verified by the
+     * caller with {@code String.contains}.
+     */
+    int[] candidates(String lowerKeyword);
+}
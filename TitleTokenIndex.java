@@ -0,0 +1,81 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from lowercase title words to the positions of the books
+ * whose titles contain them.  A word is a maximal run of letters and digits.
+ *
+ * Only whole-word queries (words separated by whitespace) are answered from
+ * the index: the candidates are the titles containing every query word as a
+ * whole word.  Any other query returns null so the caller falls back to
+ * scanning every title.
+ */
+public class TitleTokenIndex implements TitleIndex {
+    private final Map<String, IntList> postings = new HashMap<>();
+
+    @Override
+    public void add(int id, String lowerTitle) {
+        for (String token : tokenize(lowerTitle)) {
+            IntList ids = postings.computeIfAbsent(token, k -> new IntList());
+            if (ids.last() != id) ids.add(id);   // a word repeated in one title
+        }
+    }
+
+    @Override
+    public void clear() {
+        postings.clear();
+    }
+
+    @Override
+    public int[] candidates(String lowerKeyword) {
+        List<String> tokens = queryWords(lowerKeyword);
+        if (tokens == null) return null;
+
+        IntList[] lists = new IntList[tokens.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(tokens.get(i));
+            if (lists[i] == null) return new int[0];
+        }
+        return IntList.intersect(lists);
+    }
+
+    /**
+     * True if a keyword search through this index finds the title: it must
+     * contain the keyword and, for a whole-word query, each query word as a
+     * whole word.  For matching titles that were never indexed, such as the
+     * books streaming through a pipelined search.
+     */
+    static boolean matches(String lowerTitle, String lowerKeyword) {
+        if (!lowerTitle.contains(lowerKeyword)) return false;
+        List<String> tokens = queryWords(lowerKeyword);
+        return tokens == null || tokenize(lowerTitle).containsAll(tokens);
+    }
+
+    /** The words of a whole-word query, or null if the index cannot answer the query. */
+    private static List<String> queryWords(String lowerKeyword) {
+        for (int i = 0; i < lowerKeyword.length(); i++) {
+            char c = lowerKeyword.charAt(i);
+            if (!Character.isLetterOrDigit(c) && !Character.isWhitespace(c)) return null;
+        }
+        List<String> tokens = tokenize(lowerKeyword);
+        return tokens.isEmpty() ? null : tokens;
+    }
+
+    /** Splits text into its maximal runs of letters and digits. */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
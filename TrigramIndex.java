@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+/**
+ * Index from every three-character substring (trigram) of the lowercased
+ * titles to the positions of the books containing it.  Trigrams are packed
+ * into a long and kept in an open-addressing table, so neither building nor
+ * probing the index boxes or allocates per trigram.
+ *
+ * A title that contains the keyword as a substring necessarily contains all
+ * of the keyword's trigrams, so intersecting their posting lists yields a
+ * superset of the exact matches; the caller's {@code contains} check then
+ * reduces it to exactly the books a full scan would find.  Keywords shorter
+ * than three characters cannot be answered and fall back to the scan.
+ */
+public class TrigramIndex implements TitleIndex {
+    private static final long EMPTY = -1L;          // packed trigrams use 48 bits
+    private static final int  INITIAL_CAPACITY = 1024; // must be a power of two
+
+    private long[]    keys;
+    private IntList[] postings;
+    private int       size;
+    private int       mask;
+
+    public TrigramIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public void add(int id, String lowerTitle) {
+        for (int i = 0; i + 3 <= lowerTitle.length(); i++) {
+            long trigram = pack(lowerTitle, i);
+            int slot = slotOf(trigram);
+            IntList ids = postings[slot];
+            if (ids == null) {
+                ids = new IntList(2);
+                keys[slot] = trigram;
+                postings[slot] = ids;
+                if (++size > (mask + 1) * 3 / 4) rehash();
+            }
+            if (ids.last() != id) ids.add(id);   // a trigram repeated in one title
+        }
+    }
+
+    @Override
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public int[] candidates(String lowerKeyword) {
+        int count = lowerKeyword.length() - 2;
+        if (count <= 0) return null;
+
+        IntList[] lists = new IntList[count];
+        for (int i = 0; i < count; i++) {
+            int slot = slotOf(pack(lowerKeyword, i));
+            if (postings[slot] == null) return new int[0];
+            lists[i] = postings[slot];
+        }
+        return IntList.intersect(lists);
+    }
+
+    /** Packs the three chars starting at {@code i} into the low 48 bits of a long. */
+    private static long pack(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /** Returns the slot holding {@code trigram}, or the empty slot where it would go. */
+    private int slotOf(long trigram) {
+        int slot = hash(trigram) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != trigram) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[]    oldKeys     = keys;
+        IntList[] oldPostings = postings;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot]     = oldKeys[i];
+                postings[slot] = oldPostings[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys     = new long[capacity];
+        postings = new IntList[capacity];
+        mask     = capacity - 1;
+        size     = 0;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /** 64-bit finalizer from MurmurHash3, folded to an int. */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93e2b9b4ec5L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log kept next to a catalog file ("books.txt.wal").  Adds are
+ * appended to the log as ordinary catalog lines, so an add costs one small
+ * write no matter how large the catalog is; the catalog file itself acts as
+ * the checkpoint and the log is replayed on top of it when it is loaded.
+ *
+ * The first line of the log records the length and CRC-32 of the catalog
+ * file it applies to ("#base <length> <crc>").  Compaction writes the
+ * merged, sorted catalog to a temporary file, moves it over the catalog and
+ * only then deletes the log; if it is interrupted in between, the catalog
+ * no longer matches the base and the leftover log is discarded instead of
+ * being replayed twice, even when the new catalog happens to have the old
+ * length.  A log whose base has no CRC is treated as stale.
+ */
+public class WriteAheadLog {
+    private static final String BASE_PREFIX = "#base ";
+
+    private static final Map<String, WriteAheadLog> LOGS = new ConcurrentHashMap<>();
+
+    private final File catalogFile;
+    private final File logFile;
+
+    private WriteAheadLog(File catalogFile) {
+        this.catalogFile = catalogFile;
+        this.logFile = new File(catalogFile.getPath() + ".wal");
+    }
+
+    /** Returns the single log instance for a catalog, so all writers share one lock. */
+    public static WriteAheadLog forCatalog(File catalogFile) {
+        return LOGS.computeIfAbsent(catalogFile.getAbsolutePath(), p -> new WriteAheadLog(catalogFile));
+    }
+
+    public File getLogFile() { return logFile; }
+
+    /** Returns true if the log holds entries that are not yet in the catalog file. */
+    public synchronized boolean hasPendingEntries() throws IOException {
+        return readEntries() != null;
+    }
+
+    /** Current size of the log file in bytes (0 if there is none). */
+    public synchronized long size() {
+        return logFile.length();
+    }
+
+    /**
+     * Feeds every logged entry to the sink, in the order it was added.  A
+     * stale log (left over from an interrupted compaction) is deleted instead.
+     * Returns the number of lines replayed.
+     */
+    public synchronized int replay(CatalogSink sink) throws IOException {
+        List<String> entries = readEntries();
+        if (entries == null) return 0;
+        for (String line : entries) {
+            try {
+                sink.accept(LibraryBookTracker.parseAndValidate(line));
+            } catch (BookCatalogException e) {
+                sink.reject(line, e);
+            }
+        }
+        return entries.size();
+    }
+
+    /** Appends one book to the log and forces it to disk. */
+    public synchronized void append(Book book) throws IOException {
+        StringBuilder text = new StringBuilder();
+        if (!logFile.exists()) {
+            text.append(BASE_PREFIX).append(catalogFile.length()).append(' ')
+                .append(Long.toHexString(catalogChecksum())).append(System.lineSeparator());
+        }
+        text.append(book.toFileString()).append(System.lineSeparator());
+
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            out.write(text.toString().getBytes(Charset.defaultCharset()));
+            out.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Deletes the log after the catalog file has been rewritten from a
+     * catalog that already holds every logged entry.
+     */
+    public synchronized void discard() throws IOException {
+        Files.deleteIfExists(logFile.toPath());
+    }
+
+    /**
+     * Folds the log into the catalog file: re-reads the catalog and the log
+     * from disk, sorts the books by title, replaces the catalog atomically
+     * (in the format it was in) and deletes the log.  Invalid catalog lines
+     * are dropped, exactly as a full rewrite after an add drops them.
+     * Returns the number of books written.
+     */
+    public synchronized int compact() throws IOException {
+        // Rejected lines were already reported when the catalog and log were loaded
+        RecordingSink records = new RecordingSink();
+        CatalogFormat format = CatalogFormat.of(catalogFile);
+        format.read(catalogFile, records);
+        List<String> entries = readEntries();
+        if (entries != null) {
+            for (String line : entries) {
+                try {
+                    records.accept(LibraryBookTracker.parseAndValidate(line));
+                } catch (BookCatalogException e) {
+                    // already reported when the log was replayed
+                }
+            }
+        }
+        List<Book> books = records.getBooks();
+        books.sort(BookCatalog.TITLE_ORDER);
+
+        File tmpFile = new File(catalogFile.getPath() + ".tmp");
+        format.write(tmpFile, books);
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmpFile.toPath(), catalogFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(logFile.toPath());
+        return books.size();
+    }
+
+    /** CRC-32 of the whole catalog file. */
+    private long catalogChecksum() throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(catalogFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buf) >= 0) {
+                crc.update(buf.flip());
+                buf.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the complete entry lines of the log, or null if there is no
+     * usable log.  A log whose base no longer matches the catalog is deleted;
+     * a final line without a terminator is an interrupted append and ignored.
+     */
+    private List<String> readEntries() throws IOException {
+        if (!logFile.exists()) return null;
+
+        String text = new String(Files.readAllBytes(logFile.toPath()), Charset.defaultCharset());
+        int headerEnd = text.indexOf('\n');
+        if (headerEnd < 0 || !text.startsWith(BASE_PREFIX)) return null;
+
+        String[] base = text.substring(BASE_PREFIX.length(), headerEnd).trim().split(" ");
+        long length = -1;
+        long crc = -1;
+        if (base.length == 2) {
+            try {
+                length = Long.parseLong(base[0]);
+                crc = Long.parseLong(base[1], 16);
+            } catch (NumberFormatException e) {
+                length = -1;
+            }
+        }
+        if (length != catalogFile.length() || crc != catalogChecksum()) {
+            Files.deleteIfExists(logFile.toPath());
+            return null;
+        }
+
+        List<String> entries = new ArrayList<>();
+        int start = headerEnd + 1;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            String line = text.substring(start, end).trim();
+            if (!line.isEmpty()) entries.add(line);
+            start = end + 1;
+        }
+        return entries.isEmpty() ? null : entries;
+    }
+}
@@ -0,0 +1,80 @@
+package librarybench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One performAddBook call against a loaded catalog, including the write to
+ * a temporary catalog file.  The add mode follows -Dlibrary.add, so pass
+ * e.g. {@code -jvmArgsAppend -Dlibrary.add=append} to compare the
+ * append-only and write-ahead-log paths with the default full rewrite.
+ * The file starts out holding the same {@code size} records as the loaded
+ * catalog and is put back before every iteration; within an iteration the
+ * catalog grows by one book per invocation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class AddBookBenchmark {
+    private File directory;
+    private File catalogFile;
+    private File original;
+    private long nextIsbn;
+
+    @Setup(Level.Trial)
+    public void createFile(CatalogState state) throws IOException {
+        directory = Files.createTempDirectory("library-bench").toFile();
+        catalogFile = new File(directory, "books.txt");
+        original = new File(directory, "original.txt");
+        Files.write(original.toPath(), Arrays.asList(state.lines), Charset.defaultCharset());
+        nextIsbn = 9_790_000_000_000L;
+    }
+
+    /** Puts back the original catalog file and drops any log or leftovers of earlier adds. */
+    @Setup(Level.Iteration)
+    public void restoreFile() throws IOException {
+        Files.copy(original.toPath(), catalogFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!f.equals(original) && !f.equals(catalogFile)) f.delete();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void addBook(CatalogState state) throws Throwable {
+        String entry = "Benchmark Title " + nextIsbn + ":Bench Author:" + (nextIsbn++) + ":3";
+        TrackerHandles.PERFORM_ADD_BOOK.invokeExact(state.catalog, entry, catalogFile);
+    }
+}
@@ -0,0 +1,37 @@
+package librarybench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A loaded catalog of {@code size} synthetic records, shared by the search
+ * and add benchmarks.  The tracker's console output is discarded on the
+ * benchmark thread so printing does not dominate the measurements.
+ */
+@State(Scope.Thread)
+public class CatalogState {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    String[] lines;
+    Object catalog;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        TrackerHandles.REDIRECT_OUTPUT.invokeExact(discard, discard);
+
+        lines = SyntheticCatalog.lines(size, 42L);
+        catalog = (Object) TrackerHandles.NEW_CATALOG.invokeExact();
+        for (String line : lines) {
+            Object book = (Object) TrackerHandles.PARSE_AND_VALIDATE.invokeExact(line);
+            TrackerHandles.CATALOG_ADD.invokeExact(catalog, book);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package librarybench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-record cost of parseAndValidate and validateISBN.  Each invocation
+ * handles the next line (or ISBN) of a catalog of {@code size} records, so
+ * larger catalogs also show the effect of a working set that no longer fits
+ * in cache.  BenchmarkRunner always adds the GC profiler, so the results
+ * also show the bytes allocated per record (gc.alloc.rate.norm).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class ParseBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private String[] lines;
+    private String[] isbns;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        lines = SyntheticCatalog.lines(size, 42L);
+        isbns = new String[size];
+        for (int i = 0; i < size; i++) {
+            isbns[i] = Long.toString(SyntheticCatalog.isbn(i));
+        }
+    }
+
+    @Benchmark
+    public Object parseAndValidate() throws Throwable {
+        String line = lines[next];
+        next = (next + 1 == lines.length) ? 0 : next + 1;
+        return (Object) TrackerHandles.PARSE_AND_VALIDATE.invokeExact(line);
+    }
+
+    @Benchmark
+    public void validateISBN() throws Throwable {
+        String isbn = isbns[next];
+        next = (next + 1 == isbns.length) ? 0 : next + 1;
+        TrackerHandles.VALIDATE_ISBN.invokeExact(isbn);
+    }
+}
@@ -0,0 +1,43 @@
+package librarybench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One ISBN or keyword query against a loaded catalog.  The keyword search
+ * and store modes follow -Dlibrary.keyword and -Dlibrary.store, so pass e.g.
+ * {@code -jvmArgsAppend -Dlibrary.keyword=trigram} to measure an index, or
+ * {@code -jvmArgsAppend -Dlibrary.store=columnar} to measure a store.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SearchBenchmark {
+    /** Hits the middle of the catalog. */
+    @Benchmark
+    public void isbnSearch(CatalogState state) throws Throwable {
+        String isbn = Long.toString(SyntheticCatalog.isbn(state.size / 2));
+        TrackerHandles.PERFORM_ISBN_SEARCH.invokeExact(state.catalog, isbn);
+    }
+
+    /** Rare keyword: a word fragment that appears in no title. */
+    @Benchmark
+    public void keywordSearchMiss(CatalogState state) throws Throwable {
+        TrackerHandles.PERFORM_KEYWORD_SEARCH.invokeExact(state.catalog, "quantum");
+    }
+
+    /** Common keyword: matches roughly one title in five. */
+    @Benchmark
+    public void keywordSearchHit(CatalogState state) throws Throwable {
+        TrackerHandles.PERFORM_KEYWORD_SEARCH.invokeExact(state.catalog, "java");
+    }
+}
@@ -0,0 +1,47 @@
+package librarybench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic in-memory catalog lines ("Title:Author:ISBN:Copies") for
+ * the benchmarks.  Every line is valid and every ISBN is unique.
+ */
+final class SyntheticCatalog {
+    static final String[] WORDS = {
+        "java", "data", "systems", "algorithms", "design", "patterns", "network",
+        "theory", "practical", "introduction", "advanced", "modern", "computer",
+        "science", "programming", "database", "operating", "secure", "cloud", "learning"
+    };
+
+    private static final int AUTHORS = 5_000;
+    private static final long ISBN_BASE = 9_780_000_000_000L;
+
+    private SyntheticCatalog() {
+    }
+
+    /** Returns {@code size} catalog lines generated from the given seed. */
+    static String[] lines(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] lines = new String[size];
+        StringBuilder sb = new StringBuilder(64);
+        for (int i = 0; i < size; i++) {
+            sb.setLength(0);
+            int words = 1 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) sb.append(' ');
+                String word = WORDS[random.nextInt(WORDS.length)];
+                sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            }
+            sb.append(':').append("Author ").append(random.nextInt(AUTHORS))
+              .append(':').append(isbn(i))
+              .append(':').append(1 + random.nextInt(20));
+            lines[i] = sb.toString();
+        }
+        return lines;
+    }
+
+    /** The ISBN used for line {@code i}. */
+    static long isbn(int i) {
+        return ISBN_BASE + i;
+    }
+}
@@ -0,0 +1,71 @@
+package librarybench;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Method handles onto the tracker's package-private helpers.
+ *
+ * The tracker lives in the default package, which Java code in a named
+ * package cannot refer to, and JMH does not accept benchmarks in the
+ * default package.  The handles are resolved once through a private lookup
+ * on the tracker classes and kept in static finals, so the JIT treats them
+ * as constants and the calls cost the same as direct ones.  Tracker types
+ * (Book, BookCatalog) are passed around as Object.
+ */
+final class TrackerHandles {
+    /** (String line) -> Book */
+    static final MethodHandle PARSE_AND_VALIDATE;
+    /** (String isbn) -> void */
+    static final MethodHandle VALIDATE_ISBN;
+    /** (BookCatalog, String isbn) -> void */
+    static final MethodHandle PERFORM_ISBN_SEARCH;
+    /** (BookCatalog, String keyword) -> void */
+    static final MethodHandle PERFORM_KEYWORD_SEARCH;
+    /** (BookCatalog, String entry, File catalogFile) -> void */
+    static final MethodHandle PERFORM_ADD_BOOK;
+    /** () -> BookCatalog, empty, for the configured keyword and store modes */
+    static final MethodHandle NEW_CATALOG;
+    /** (BookCatalog, Book) -> void */
+    static final MethodHandle CATALOG_ADD;
+    /** (PrintStream out, PrintStream err) -> void */
+    static final MethodHandle REDIRECT_OUTPUT;
+
+    static {
+        try {
+            Class<?> tracker = Class.forName("LibraryBookTracker");
+            Class<?> book    = Class.forName("Book");
+            Class<?> catalog = Class.forName("BookCatalog");
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(tracker, MethodHandles.lookup());
+
+            PARSE_AND_VALIDATE = lookup.findStatic(tracker, "parseAndValidate",
+                    MethodType.methodType(book, String.class))
+                .asType(MethodType.methodType(Object.class, String.class));
+            VALIDATE_ISBN = lookup.findStatic(tracker, "validateISBN",
+                MethodType.methodType(void.class, String.class));
+            PERFORM_ISBN_SEARCH = lookup.findStatic(tracker, "performISBNSearch",
+                    MethodType.methodType(void.class, catalog, String.class))
+                .asType(MethodType.methodType(void.class, Object.class, String.class));
+            PERFORM_KEYWORD_SEARCH = lookup.findStatic(tracker, "performKeywordSearch",
+                    MethodType.methodType(void.class, catalog, String.class))
+                .asType(MethodType.methodType(void.class, Object.class, String.class));
+            PERFORM_ADD_BOOK = lookup.findStatic(tracker, "performAddBook",
+                    MethodType.methodType(void.class, catalog, String.class, File.class))
+                .asType(MethodType.methodType(void.class, Object.class, String.class, File.class));
+            NEW_CATALOG = lookup.findStatic(tracker, "createCatalog", MethodType.methodType(catalog))
+                .asType(MethodType.methodType(Object.class));
+            CATALOG_ADD = lookup.findVirtual(catalog, "add", MethodType.methodType(void.class, book))
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            REDIRECT_OUTPUT = lookup.findStatic(tracker, "redirectOutput",
+                MethodType.methodType(void.class, PrintStream.class, PrintStream.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private TrackerHandles() {
+    }
+}
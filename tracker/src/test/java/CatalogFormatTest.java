@@ -0,0 +1,148 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Round-trips and corrupted-input handling of the binary and compressed formats. */
+class CatalogFormatTest {
+    @TempDir
+    Path dir;
+
+    /** Enough books, with enough repeated authors, to fill several compressed blocks. */
+    private static List<Book> books(int n) {
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String title = "Title " + i + " of edition " + random.nextInt(1000);
+            String author = "Author " + random.nextInt(50);
+            books.add(new Book(title, author, 9_780_000_000_000L + i, 1 + random.nextInt(9)));
+        }
+        return books;
+    }
+
+    private static List<String> lines(List<Book> books) {
+        List<String> lines = new ArrayList<>(books.size());
+        for (Book b : books) lines.add(b.toFileString());
+        return lines;
+    }
+
+    private static List<String> readLines(CatalogFormat format, File file) throws IOException {
+        RecordingSink records = new RecordingSink();
+        format.read(file, records);
+        assertTrue(records.getRejections().isEmpty(), "no rejections");
+        return lines(records.getBooks());
+    }
+
+    private void roundTrip(CatalogFormat format) throws IOException {
+        File file = dir.resolve("books.txt").toFile();
+        List<Book> books = books(5000);
+        format.write(file, books);
+        assertEquals(format, CatalogFormat.of(file));
+        assertEquals(lines(books), readLines(format, file));
+
+        Book added = new Book("Added", "Someone New", 9_791_000_000_000L, 2);
+        format.append(file, added);
+        books.add(added);
+        assertEquals(lines(books), readLines(format, file));
+    }
+
+    private void emptyRoundTrip(CatalogFormat format) throws IOException {
+        File file = dir.resolve("empty.txt").toFile();
+        format.write(file, new ArrayList<>());
+        assertEquals(new ArrayList<String>(), readLines(format, file));
+        Book added = new Book("Only", "One", 9_780_306_406_157L, 1);
+        format.append(file, added);
+        assertEquals(lines(Arrays.asList(added)), readLines(format, file));
+    }
+
+    @Test
+    void binaryRoundTrip() throws IOException {
+        roundTrip(CatalogFormat.BINARY);
+        emptyRoundTrip(CatalogFormat.BINARY);
+    }
+
+    /** Binary strings are UTF-8 whatever the platform charset is. */
+    @Test
+    void binaryKeepsNonAsciiText() throws IOException {
+        File file = dir.resolve("books.txt").toFile();
+        List<Book> books = Arrays.asList(new Book("Caf\u00e9 \u00dcber Alles", "Bront\u00eb", 9_780_306_406_157L, 1));
+        CatalogFormat.BINARY.write(file, books);
+        assertEquals(lines(books), readLines(CatalogFormat.BINARY, file));
+    }
+
+    @Test
+    void compressedRoundTrip() throws IOException {
+        roundTrip(CatalogFormat.COMPRESSED);
+        emptyRoundTrip(CatalogFormat.COMPRESSED);
+    }
+
+    /** Writes the books in the format and returns the file's bytes. */
+    private byte[] written(CatalogFormat format, int n) throws IOException {
+        File file = dir.resolve("good.txt").toFile();
+        format.write(file, books(n));
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private void assertRejected(CatalogFormat format, byte[] bytes) throws IOException {
+        File file = dir.resolve("bad.txt").toFile();
+        Files.write(file.toPath(), bytes);
+        assertThrows(IOException.class, () -> format.read(file, new RecordingSink()));
+    }
+
+    @Test
+    void binaryRejectsCorruptInput() throws IOException {
+        byte[] good = written(CatalogFormat.BINARY, 100);
+        int firstRecord = 24;
+
+        byte[] version = good.clone();
+        version[4] = 99;
+        assertRejected(CatalogFormat.BINARY, version);
+
+        assertRejected(CatalogFormat.BINARY, Arrays.copyOf(good, good.length / 2));
+
+        // A title length that decodes to a negative int
+        byte[] negative = splice(good, firstRecord, 1, 0xff, 0xff, 0xff, 0xff, 0x0f);
+        assertRejected(CatalogFormat.BINARY, negative);
+
+        // A title length far past the end of the file
+        byte[] huge = splice(good, firstRecord, 1, 0xff, 0xff, 0xff, 0xff, 0x07);
+        assertRejected(CatalogFormat.BINARY, huge);
+
+        // An author reference to an author no record has defined
+        int titleLength = good[firstRecord];
+        byte[] undefined = splice(good, firstRecord + 1 + titleLength, 1, 0x7f);
+        assertRejected(CatalogFormat.BINARY, undefined);
+    }
+
+    @Test
+    void compressedRejectsCorruptInput() throws IOException {
+        byte[] good = written(CatalogFormat.COMPRESSED, 5000);
+
+        byte[] flipped = good.clone();
+        flipped[good.length / 3] ^= 0x55;
+        assertRejected(CatalogFormat.COMPRESSED, flipped);
+
+        assertRejected(CatalogFormat.COMPRESSED, Arrays.copyOf(good, good.length - 4));
+        assertRejected(CatalogFormat.COMPRESSED, Arrays.copyOf(good, good.length / 2));
+    }
+
+    /** Replaces {@code length} bytes at {@code at} with the given bytes. */
+    private static byte[] splice(byte[] bytes, int at, int length, int... replacement) {
+        byte[] out = new byte[bytes.length - length + replacement.length];
+        System.arraycopy(bytes, 0, out, 0, at);
+        for (int i = 0; i < replacement.length; i++) out[at + i] = (byte) replacement[i];
+        System.arraycopy(bytes, at + length, out, at + replacement.length, bytes.length - at - length);
+        return out;
+    }
+}
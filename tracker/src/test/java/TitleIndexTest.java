@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** Keyword searches through the title indexes against a linear scan of every title. */
+class TitleIndexTest {
+    private static final String[] WORDS = {
+        "java", "javascript", "the", "theory", "art", "of", "data", "database", "c++",
+        "r&d", "x", "42", "café", "a", "an", "and", "sand", "programming"
+    };
+    private static final String[] SEPARATORS = { " ", " ", " ", "-", ": ", ", ", "'" };
+
+    private final List<String> titles = new ArrayList<>();
+    private final List<String> keywords = new ArrayList<>();
+
+    TitleIndexTest() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            titles.add(phrase(random, 1 + random.nextInt(6)));
+        }
+        for (int i = 0; i < 300; i++) {
+            String phrase = phrase(random, 1 + random.nextInt(3));
+            keywords.add(phrase);
+            int from = random.nextInt(phrase.length());
+            keywords.add(phrase.substring(from, from + random.nextInt(phrase.length() - from) + 1));
+        }
+        keywords.addAll(Arrays.asList("", " ", "zzz", "a", "an", "ja", "java  data", "C++", "CAFÉ"));
+    }
+
+    private static String phrase(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) sb.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(random.nextBoolean() ? word : word.toUpperCase());
+        }
+        return sb.toString();
+    }
+
+    /** What findByKeyword returns: the candidates (or every title) that contain the keyword. */
+    private List<Integer> search(TitleIndex index, String keyword) {
+        String lower = keyword.toLowerCase();
+        int[] candidates = index.candidates(lower);
+        List<Integer> matches = new ArrayList<>();
+        if (candidates == null) {
+            for (int i = 0; i < titles.size(); i++) {
+                if (titles.get(i).toLowerCase().contains(lower)) matches.add(i);
+            }
+            return matches;
+        }
+        for (int i = 1; i < candidates.length; i++) {
+            assertTrue(candidates[i - 1] < candidates[i], "candidates ascending");
+        }
+        for (int id : candidates) {
+            if (titles.get(id).toLowerCase().contains(lower)) matches.add(id);
+        }
+        return matches;
+    }
+
+    private void build(TitleIndex index) {
+        for (int i = 0; i < titles.size(); i++) index.add(i, titles.get(i).toLowerCase());
+    }
+
+    @Test
+    void trigramIndexFindsExactlyTheSubstringMatches() {
+        TrigramIndex index = new TrigramIndex();
+        build(index);
+        for (String keyword : keywords) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < titles.size(); i++) {
+                if (titles.get(i).toLowerCase().contains(keyword.toLowerCase())) expected.add(i);
+            }
+            assertEquals(expected, search(index, keyword), "keyword \"" + keyword + "\"");
+        }
+    }
+
+    @Test
+    void wordIndexFindsTitlesWithEveryQueryWordAsAWholeWord() {
+        TitleTokenIndex index = new TitleTokenIndex();
+        build(index);
+        for (String keyword : keywords) {
+            String lower = keyword.toLowerCase();
+            boolean plainWords = !lower.isBlank() && lower.chars()
+                .allMatch(c -> Character.isLetterOrDigit(c) || Character.isWhitespace(c));
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < titles.size(); i++) {
+                String title = titles.get(i).toLowerCase();
+                if (title.contains(lower) && (!plainWords || hasWholeWords(title, lower))) expected.add(i);
+            }
+            assertEquals(expected, search(index, keyword), "keyword \"" + keyword + "\"");
+        }
+    }
+
+    /** True if every whitespace-separated word of the query is a whole word of the title. */
+    private static boolean hasWholeWords(String title, String query) {
+        List<String> titleWords = Arrays.asList(title.split("[^\\p{L}\\p{Nd}]+"));
+        for (String word : query.trim().split("\\s+")) {
+            if (!titleWords.contains(word)) return false;
+        }
+        return true;
+    }
+}
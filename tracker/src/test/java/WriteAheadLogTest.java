@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Replay, compaction and staleness of the write-ahead log. */
+class WriteAheadLogTest {
+    @TempDir
+    Path dir;
+
+    private File catalog(String... lines) throws IOException {
+        File file = dir.resolve("books.txt").toFile();
+        Files.write(file.toPath(), Arrays.asList(lines), Charset.defaultCharset());
+        return file;
+    }
+
+    private static List<String> replayed(WriteAheadLog wal) throws IOException {
+        RecordingSink records = new RecordingSink();
+        wal.replay(records);
+        List<String> lines = new ArrayList<>();
+        for (Book b : records.getBooks()) lines.add(b.toFileString());
+        return lines;
+    }
+
+    @Test
+    void replaysAppendedBooksInOrder() throws IOException {
+        File file = catalog("Zeta:Z Author:9780262033848:1");
+        WriteAheadLog wal = WriteAheadLog.forCatalog(file);
+        wal.append(new Book("Beta", "B Author", 9_780_132_350_884L, 2));
+        wal.append(new Book("Alpha", "A Author", 9_780_201_633_610L, 3));
+
+        assertTrue(wal.hasPendingEntries());
+        assertEquals(Arrays.asList("Beta:B Author:9780132350884:2", "Alpha:A Author:9780201633610:3"),
+            replayed(wal));
+    }
+
+    @Test
+    void compactionMergesSortsAndDeletesTheLog() throws IOException {
+        File file = catalog("Zeta:Z Author:9780262033848:1", "Gamma:G Author:9780134685991:4");
+        WriteAheadLog wal = WriteAheadLog.forCatalog(file);
+        wal.append(new Book("Alpha", "A Author", 9_780_201_633_610L, 3));
+
+        assertEquals(3, wal.compact());
+        assertFalse(wal.getLogFile().exists());
+        assertFalse(wal.hasPendingEntries());
+        assertEquals(Arrays.asList("Alpha:A Author:9780201633610:3",
+                                   "Gamma:G Author:9780134685991:4",
+                                   "Zeta:Z Author:9780262033848:1"),
+            Files.readAllLines(file.toPath(), Charset.defaultCharset()));
+    }
+
+    @Test
+    void logForAChangedCatalogOfTheSameLengthIsStale() throws IOException {
+        File file = catalog("Zeta:Z Author:9780262033848:1");
+        WriteAheadLog wal = WriteAheadLog.forCatalog(file);
+        wal.append(new Book("Alpha", "A Author", 9_780_201_633_610L, 3));
+
+        // What an interrupted compaction leaves: a new catalog, the old log
+        catalog("Yeta:Y Author:9780262033848:1");
+        assertEquals(new ArrayList<String>(), replayed(wal));
+        assertFalse(wal.getLogFile().exists());
+    }
+
+    @Test
+    void baseWithoutChecksumIsStale() throws IOException {
+        File file = catalog("Zeta:Z Author:9780262033848:1");
+        WriteAheadLog wal = WriteAheadLog.forCatalog(file);
+        Files.write(wal.getLogFile().toPath(), Arrays.asList(
+            "#base " + file.length(), "Alpha:A Author:9780201633610:3"), Charset.defaultCharset());
+
+        assertFalse(wal.hasPendingEntries());
+        assertFalse(wal.getLogFile().exists());
+    }
+
+    @Test
+    void unterminatedLastEntryIsIgnored() throws IOException {
+        File file = catalog("Zeta:Z Author:9780262033848:1");
+        WriteAheadLog wal = WriteAheadLog.forCatalog(file);
+        wal.append(new Book("Alpha", "A Author", 9_780_201_633_610L, 3));
+        Files.write(wal.getLogFile().toPath(), "Beta:B Auth".getBytes(Charset.defaultCharset()),
+            java.nio.file.StandardOpenOption.APPEND);
+
+        assertEquals(Arrays.asList("Alpha:A Author:9780201633610:3"), replayed(wal));
+    }
+}